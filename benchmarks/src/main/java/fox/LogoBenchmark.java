@@ -0,0 +1,79 @@
+package fox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время отрисовки одного кадра {@link FoxLogo} во внеэкранное изображение размером с экран 1920x1080.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LogoBenchmark {
+    private static final Dimension SCREEN = new Dimension(1920, 1080);
+
+    @Param({"DEFAULT", "FILL", "WRAP"})
+    private FoxLogo.IMAGE_STYLE imageStyle;
+
+    @Param({"1280", "3840"})
+    private int imageWidth;
+
+    private FoxLogo logo;
+    private BufferedImage canvas;
+    private Graphics2D g2D;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BufferedImage image = new BufferedImage(imageWidth, imageWidth * 9 / 16, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, image.getWidth(), image.getHeight(), Color.DARK_GRAY));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+
+        logo = new FoxLogo();
+        logo.setScreen(SCREEN);
+        logo.setImages(new BufferedImage[] {image});
+        logo.setPicCounter(0);
+        logo.setLogoBackColor(Color.BLACK);
+        logo.setImStyle(imageStyle);
+        logo.setCornerLabelText("FoxGames");
+        // кадр остается на экране весь прогон и не уходит в затухание:
+        logo.setImageShowTime(Integer.MAX_VALUE);
+        logo.setTimeStamp(System.currentTimeMillis());
+
+        canvas = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_RGB);
+        g2D = canvas.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2D.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+        logo.paintFrame(g2D, canvas.getWidth(), canvas.getHeight());
+        return canvas;
+    }
+}
@@ -0,0 +1,90 @@
+package fox.games;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный расчет опыта: {@value #BATCH} пар уровней игрок/цель за вызов, время указано на одну пару.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExperienceBenchmark {
+    static final int BATCH = 4096;
+
+    private int[] playerLevels;
+    private int[] aimLevels;
+    private float[] playerLevelsF;
+    private float[] aimLevelsF;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        playerLevels = new int[BATCH];
+        aimLevels = new int[BATCH];
+        playerLevelsF = new float[BATCH];
+        aimLevelsF = new float[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            playerLevels[i] = random.nextInt(1, 100);
+            aimLevels[i] = Math.max(1, playerLevels[i] + random.nextInt(-10, 11));
+            playerLevelsF[i] = playerLevels[i];
+            aimLevelsF[i] = aimLevels[i];
+        }
+        out = new double[BATCH];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] getExpInt() {
+        for (int i = 0; i < BATCH; i++) {
+            out[i] = FoxExperience.getExp(playerLevels[i], aimLevels[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] getExpIntBatch() {
+        FoxExperience.getExp(playerLevels, aimLevels, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] getExpIntBatchOneAim() {
+        FoxExperience.getExp(playerLevels, 50, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] getExpFloatBatch() {
+        FoxExperience.getExp(playerLevelsF, aimLevelsF, 100f, 10f, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] getExpFloat() {
+        for (int i = 0; i < BATCH; i++) {
+            out[i] = FoxExperience.getExp(playerLevelsF[i], aimLevelsF[i], 100f, 10f);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,174 @@
+package fox.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность обработки PCM: приведение формата, программное усиление и сведение голосов.
+ * Одна операция - одна секунда звука (для сведения - один блок микшера).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PcmBenchmark {
+    static final AudioFormat OUT = SoftMixer.DEFAULT_FORMAT;
+    static final int BLOCK_FRAMES = 512;
+
+    @State(Scope.Thread)
+    public static class ConvertState {
+        @Param({"22050", "44100", "48000"})
+        float sourceRate;
+
+        @Param({"1", "2"})
+        int sourceChannels;
+
+        PcmTrack source;
+        byte[] readBuf;
+
+        @Setup
+        public void setUp() {
+            AudioFormat format = new AudioFormat(sourceRate, 16, sourceChannels, true, false);
+            source = new PcmTrack("source", format, direct(PlayerBenchmark.tone(format, 1000)));
+            readBuf = new byte[8192];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GainState {
+        byte[] pcm;
+        GainRamp gainRamp;
+        boolean isRising;
+
+        @Setup
+        public void setUp() {
+            pcm = PlayerBenchmark.tone(OUT, 1000);
+            gainRamp = new GainRamp(1f);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MixState {
+        @Param({"1", "8", "32"})
+        int voiceCount;
+
+        MixerVoice[] voices;
+        float[] acc;
+        byte[] out;
+
+        @Setup
+        public void setUp() {
+            PcmTrack track = new PcmTrack("mix", OUT, direct(PlayerBenchmark.tone(OUT, 1000)));
+            PlayerMetrics metrics = new PlayerMetrics("bench");
+            voices = new MixerVoice[voiceCount];
+            for (int i = 0; i < voices.length; i++) {
+                voices[i] = new MixerVoice("voice" + i, () -> PcmSource.loop(PcmSource.of(track), 0, 0), 0f, 0, metrics, System.nanoTime());
+            }
+            acc = new float[BLOCK_FRAMES * OUT.getChannels()];
+            out = new byte[acc.length * 2];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class KernelState {
+        byte[] pcm;
+        float[] samples;
+        float[] other;
+
+        @Setup
+        public void setUp() {
+            pcm = PlayerBenchmark.tone(OUT, 1000);
+            samples = new float[pcm.length / 2];
+            other = new float[samples.length];
+            PcmKernels.toFloat(pcm, 0, other, 0, other.length);
+        }
+    }
+
+    /**
+     * Приведение исходного формата к формату микшера (ресемплинг и каналы).
+     */
+    @Benchmark
+    public long convert(ConvertState s) throws IOException {
+        long total = 0;
+        try (PcmSource in = PcmSource.convert(PcmSource.of(s.source), OUT)) {
+            int n;
+            while ((n = in.read(s.readBuf, 0, s.readBuf.length)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Программное усиление с плавным переходом на всей секунде звука.
+     */
+    @Benchmark
+    public byte[] gainRamp(GainState s) {
+        s.isRising = !s.isRising;
+        s.gainRamp.rampTo(s.isRising ? 1f : 0.25f, 1000);
+        s.gainRamp.apply(s.pcm, s.pcm.length, OUT);
+        return s.pcm;
+    }
+
+    /**
+     * Один блок микшера: суммирование {@code voiceCount} голосов и перевод в 16 бит с насыщением.
+     */
+    @Benchmark
+    public byte[] mixBlock(MixState s) {
+        Arrays.fill(s.acc, 0f);
+        for (MixerVoice voice : s.voices) {
+            voice.mixInto(s.acc, BLOCK_FRAMES, OUT);
+        }
+        PcmKernels.toPcm16(s.acc, 0, s.out, 0, s.acc.length);
+        return s.out;
+    }
+
+    /**
+     * Ядра {@link PcmKernels} на секунде стерео: 16 бит -> float, float -> 16 бит с насыщением, рампа усиления, сведение.
+     */
+    @Benchmark
+    public float[] kernelToFloat(KernelState s) {
+        PcmKernels.toFloat(s.pcm, 0, s.samples, 0, s.samples.length);
+        return s.samples;
+    }
+
+    @Benchmark
+    public byte[] kernelToPcm16(KernelState s) {
+        PcmKernels.toPcm16(s.other, 0, s.pcm, 0, s.other.length);
+        return s.pcm;
+    }
+
+    @Benchmark
+    public float kernelGainRamp(KernelState s) {
+        int frames = s.samples.length / 2;
+        return PcmKernels.gainRamp(s.samples, 0, frames, 2, 0f, 1f / frames);
+    }
+
+    @Benchmark
+    public float[] kernelMix(KernelState s) {
+        PcmKernels.mix(s.samples, 0, s.other, 0, s.samples.length, 0.5f);
+        return s.samples;
+    }
+
+    static ByteBuffer direct(byte[] pcm) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pcm.length);
+        buffer.put(pcm).flip();
+        return buffer;
+    }
+}
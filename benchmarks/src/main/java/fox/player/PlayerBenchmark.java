@@ -0,0 +1,110 @@
+package fox.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка вызова {@link FoxPlayer#play(String, boolean)} и пропускная способность пачки вызовов.
+ * Вывод идет в {@link SimulatedMixerProvider} со скоростью 0, задержка до первого сэмпла печатается из {@link PlayerMetrics} в конце прогона.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djavax.sound.sampled.SourceDataLine=" + SimulatedMixerProvider.DEFAULT_LINE,
+        "-D" + SimulatedMixerProvider.SPEED_PROPERTY + "=0", "-Djava.awt.headless=true"})
+public class PlayerBenchmark {
+    static final int BURST = 64;
+    private static final String TRACK = "tone";
+
+    private File track;
+    private FoxPlayer player;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        track = writeTone(Files.createTempFile("foxbench", ".wav").toFile(), new AudioFormat(44100f, 16, 2, true, false), 50);
+
+        player = new FoxPlayer("bench", PlayerScheduler.DEFAULT_WORKERS, 1 << 16);
+        player.setParallelPlayable(true);
+        player.setVolume(50);
+        player.add(TRACK, track);
+        player.getOutputFormat();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopAll() {
+        player.stop(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println(player.getMetrics());
+        System.out.println("dropped commands: " + player.getDroppedCommands());
+        player.shutdown();
+        track.delete();
+    }
+
+    @Benchmark
+    public void play() {
+        player.play(TRACK, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void playBurst() {
+        for (int i = 0; i < BURST; i++) {
+            player.play(TRACK, false);
+        }
+    }
+
+    /**
+     * Пишет в файл синусоиду 440 Гц заданной длительности.
+     */
+    static File writeTone(File file, AudioFormat format, int durationMs) throws IOException {
+        byte[] pcm = tone(format, durationMs);
+        try (AudioInputStream ais = new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / format.getFrameSize())) {
+            AudioSystem.write(ais, AudioFileFormat.Type.WAVE, file);
+        }
+        return file;
+    }
+
+    /**
+     * @return синусоида 440 Гц в 16-битном little-endian PCM.
+     */
+    static byte[] tone(AudioFormat format, int durationMs) {
+        int channels = format.getChannels();
+        int frames = (int) (format.getFrameRate() * durationMs / 1000);
+        byte[] pcm = new byte[frames * channels * 2];
+        for (int f = 0, b = 0; f < frames; f++) {
+            short v = (short) (Math.sin(2 * Math.PI * 440 * f / format.getFrameRate()) * 16000);
+            for (int c = 0; c < channels; c++, b += 2) {
+                pcm[b] = (byte) v;
+                pcm[b + 1] = (byte) (v >> 8);
+            }
+        }
+        return pcm;
+    }
+}
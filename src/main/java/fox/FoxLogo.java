@@ -2,20 +2,28 @@ package fox;
 
 import fox.Out.LEVEL;
 import lombok.Data;
-import render.FoxRender;
 import utils.InputAction;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 @Data
 public class FoxLogo implements Runnable {
-    private Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+    private Dimension screen = GraphicsEnvironment.isHeadless() ? new Dimension(1920, 1080) : Toolkit.getDefaultToolkit().getScreenSize();
     public enum IMAGE_STYLE {FILL, DEFAULT, WRAP}
     private IMAGE_STYLE imStyle = IMAGE_STYLE.DEFAULT;
     public enum BACK_STYLE {ASIS, PICK, COLOR}
@@ -28,18 +36,39 @@ public class FoxLogo implements Runnable {
     private Thread engine;
 
     private BufferedImage[] images;
+    /**
+     * Ленивые источники картинок: декодируются в фоне по одной-две, вместо массива {@link #images}.
+     */
+    private List<Supplier<BufferedImage>> imageSources;
     private Color logoBackColor, color;
     private Raster raster;
 
     private int breakKey = KeyEvent.VK_ESCAPE;
     private int picCounter = -1;
     private int fps = 30, imageShowTime = 5000;
+    /**
+     * Длительность нарастания и затухания картинки в мс (не зависит от частоты кадров).
+     */
+    private int fadeInTime = 650, fadeOutTime = 450;
 
     private String cornerLabelText;
     private float alphaGrad = 0f;
 
     private boolean isBreaked = false;
     private boolean hightQualityMode = false;
+    private boolean rising = true, hiding = false;
+    /**
+     * Активная отрисовка: поток логотипа сам рисует кадры через {@link BufferStrategy} с шагом 1/fps по {@link System#nanoTime()},
+     * минуя очередь repaint() в EDT. Окно при этом непрозрачно (стиль фона PICK показывает черный фон).
+     */
+    private boolean activeRendering = false;
+    private long imageStartNanos, hideStartNanos;
+    /**
+     * Время отрисовки кадров, пропущенные кадры и время масштабирования картинок.
+     */
+    private final FrameStats frameStats = new FrameStats();
+    private final LogoImageCache imageCache = new LogoImageCache(frameStats);
+    private final LogoRenderer renderer = new LogoRenderer();
 
     public void start(String cornerLabelText, BufferedImage[] textureFilesMassive) {
         start(cornerLabelText, textureFilesMassive, imStyle, bStyle, breakKey);
@@ -53,9 +82,56 @@ public class FoxLogo implements Runnable {
         if (textureFilesMassive == null) {
             throw new RuntimeException("StartLogoRenderer: start: Error. Textures massive is NULL.");
         }
-        this.cornerLabelText = cornerLabelText;
         Out.Print(FoxLogo.class, LEVEL.DEBUG, "Load StartLogo`s images count: " + textureFilesMassive.length);
         images = textureFilesMassive;
+        imageSources = null;
+        start(cornerLabelText, imStyle, bStyle, _breakKey);
+    }
+
+    public void start(String cornerLabelText, Path[] imagePaths) {
+        start(cornerLabelText, imagePaths, imStyle, bStyle, breakKey);
+    }
+
+    /**
+     * Показывает картинки из файлов, не загружая их заранее: следующая декодируется в фоне, пока видна текущая,
+     * и в памяти одновременно не больше двух картинок.
+     */
+    public void start(String cornerLabelText, Path[] imagePaths, IMAGE_STYLE imStyle, BACK_STYLE bStyle, int _breakKey) {
+        if (imagePaths == null) {
+            throw new RuntimeException("StartLogoRenderer: start: Error. Image paths massive is NULL.");
+        }
+        List<Supplier<BufferedImage>> sources = new ArrayList<>(imagePaths.length);
+        for (Path path : imagePaths) {
+            sources.add(() -> {
+                try {
+                    return ImageIO.read(path.toFile());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("The logo image " + path + " can not be read", e);
+                }
+            });
+        }
+        start(cornerLabelText, sources, imStyle, bStyle, _breakKey);
+    }
+
+    public void start(String cornerLabelText, List<Supplier<BufferedImage>> imageSuppliers) {
+        start(cornerLabelText, imageSuppliers, imStyle, bStyle, breakKey);
+    }
+
+    /**
+     * @param imageSuppliers источники картинок; вызываются по одному в фоновом потоке незадолго до показа.
+     */
+    public void start(String cornerLabelText, List<Supplier<BufferedImage>> imageSuppliers, IMAGE_STYLE imStyle, BACK_STYLE bStyle, int _breakKey) {
+        if (imageSuppliers == null) {
+            throw new RuntimeException("StartLogoRenderer: start: Error. Image suppliers list is NULL.");
+        }
+        Out.Print(FoxLogo.class, LEVEL.DEBUG, "Lazy StartLogo`s images count: " + imageSuppliers.size());
+        images = null;
+        imageSources = new ArrayList<>(imageSuppliers);
+        start(cornerLabelText, imStyle, bStyle, _breakKey);
+    }
+
+    private void start(String cornerLabelText, IMAGE_STYLE imStyle, BACK_STYLE bStyle, int _breakKey) {
+        this.cornerLabelText = cornerLabelText;
 
         Out.Print(FoxLogo.class, LEVEL.DEBUG, "Set StartLogo`s breakKey to " + KeyEvent.getKeyText(_breakKey) + "\n");
         breakKey = _breakKey;
@@ -70,15 +146,23 @@ public class FoxLogo implements Runnable {
     @Override
     public void run() {
         loadNextImage();
+        if (!isBreaked) {
+            // первый кадр не ждет ничего, кроме подготовки первой картинки:
+            try {
+                imageCache.await(picCounter);
+            } catch (Exception e) {
+                Out.Print(FoxLogo.class, LEVEL.INFO, "The logo image can not be prepared: " + e.getMessage());
+            }
+            imageStartNanos = System.nanoTime();
+        }
         timeStamp = System.currentTimeMillis();
 
         logoFrame = new JFrame() {
-            private boolean rising = true, hiding = false;
-
             {
                 setFocusable(true);
                 setUndecorated(true);
-                setBackground(new Color(0, 0, 0, 0));
+                setBackground(activeRendering ? Color.BLACK : new Color(0, 0, 0, 0));
+                setIgnoreRepaint(activeRendering);
                 setExtendedState(Frame.MAXIMIZED_BOTH);
 
                 inAc(this);
@@ -89,112 +173,194 @@ public class FoxLogo implements Runnable {
 
             @Override
             public void paint(Graphics g) {
-                if (isBreaked) {
+                if (isBreaked || activeRendering) {
                     return;
                 }
                 super.paint(g);
 
                 Graphics2D g2D = (Graphics2D) g;
-                FoxRender.setRender(g2D, FoxRender.RENDER.MED);
-
-                if (rising) gradeUp();
-
-                if (bStyle == BACK_STYLE.ASIS) {
-                    g2D.setColor(logoBackColor);
-                    g2D.fillRect(0, 0, getWidth(), getHeight());
-                } else if (bStyle == BACK_STYLE.COLOR) {
-                    g2D.setColor(color == null ? Color.MAGENTA : color);
-                    g2D.fillRect(0, 0, getWidth(), getHeight());
-                }
-
-                g2D.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alphaGrad));
-
-                Float imageWidth, imageHeight;
-                if (imStyle == IMAGE_STYLE.WRAP) { // style is WRAP:
-                    imageWidth = (float) images[picCounter].getWidth();
-                    imageHeight = (float) images[picCounter].getHeight();
-                    while (imageWidth > screen.width) {
-                        imageWidth -= 4;
-                        imageHeight -= 2;
-                    }
-                    while (imageHeight > screen.height) {
-                        imageHeight -= 4;
-                        imageWidth -= 2.5f;
-                    }
-
-                } else if (imStyle == IMAGE_STYLE.FILL) { // style is FILL:
-                    imageWidth = (float) screen.getWidth();
-                    imageHeight = (float) screen.getHeight();
-
-                } else { // style is DEFAULT:
-                    imageWidth = (float) images[picCounter].getWidth();
-                    imageHeight = (float) images[picCounter].getHeight();
-                }
-
-                drawImage(g2D, imageWidth.intValue(), imageHeight.intValue());
-                drawText(g2D);
-
+                paintFrame(g2D, getWidth(), getHeight());
                 g2D.dispose();
-
-                if (System.currentTimeMillis() - timeStamp > imageShowTime && hiding) {
-                    gradeDown();
-                }
-                if (alphaGrad == 0) {
-                    loadNextImage();
-                }
             }
+        };
 
-            private void drawText(Graphics2D g2D) {
-                if (cornerLabelText != null && !cornerLabelText.isBlank()) {
-                    g2D.setColor(Color.BLACK);
-                    if (customFont != null) {
-                        g2D.setFont(customFont);
-                    }
-                    g2D.drawString(cornerLabelText, 30, 30);
-                }
-            }
+        if (activeRendering) {
+            renderActive();
+        } else {
+            renderPassive();
+        }
 
-            private void drawImage(Graphics2D g2D, int imWidth, int imHeight) {
-                g2D.drawImage(images[picCounter],
-                        screen.width / 2 - imWidth / 2,
-                        screen.height / 2 - imHeight / 2,
-                        imWidth, imHeight, logoFrame);
-            }
+        finalLogo();
+        imageCache.close();
+        renderer.dispose();
+        logoFrame.dispose();
+    }
 
-            private void gradeUp() {
-                if (alphaGrad > 0.94f) {
-                    alphaGrad = 1f;
-                    rising = false;
-                    hiding = true;
-                } else {
-                    alphaGrad += 0.05f;
-                }
+    private void renderPassive() {
+        long frameNanos = TimeUnit.SECONDS.toNanos(1) / fps;
+        long nextFrame = System.nanoTime();
+        while (!isBreaked && !engine.isInterrupted()) {
+            try {
+                logoFrame.repaint();
+                nextFrame = waitNextFrame(nextFrame, frameNanos);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+        }
+    }
 
-            private void gradeDown() {
-                if (alphaGrad < 0.076f) {
-                    alphaGrad = 0f;
-                    rising = true;
-                    hiding = false;
-                } else {
-                    alphaGrad -= 0.075f;
-                }
-            }
-        };
+    private void renderActive() {
+        logoFrame.createBufferStrategy(2);
+        BufferStrategy strategy = logoFrame.getBufferStrategy();
 
+        long frameNanos = TimeUnit.SECONDS.toNanos(1) / fps;
+        long nextFrame = System.nanoTime();
         while (!isBreaked && !engine.isInterrupted()) {
             try {
-                logoFrame.repaint();
-                TimeUnit.MILLISECONDS.sleep(1000 / fps);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                do {
+                    do {
+                        Graphics2D g2D = (Graphics2D) strategy.getDrawGraphics();
+                        try {
+                            paintFrame(g2D, logoFrame.getWidth(), logoFrame.getHeight());
+                        } finally {
+                            g2D.dispose();
+                        }
+                    } while (strategy.contentsRestored());
+                    strategy.show();
+                } while (strategy.contentsLost());
+                Toolkit.getDefaultToolkit().sync();
+
+                nextFrame = waitNextFrame(nextFrame, frameNanos);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
+        strategy.dispose();
+    }
 
-        finalLogo();
-        logoFrame.dispose();
+    /**
+     * Ждет начала следующего кадра по {@link System#nanoTime()}, не накапливая погрешность сна.
+     * Если отрисовка отстала больше чем на кадр, расписание начинается заново, без попыток "догнать".
+     * @return время начала следующего кадра.
+     */
+    private long waitNextFrame(long nextFrame, long frameNanos) {
+        nextFrame += frameNanos;
+        long now = System.nanoTime();
+        if (now - nextFrame > frameNanos) {
+            return now;
+        }
+        while ((now = System.nanoTime()) < nextFrame && !engine.isInterrupted()) {
+            LockSupport.parkNanos(this, nextFrame - now);
+        }
+        return nextFrame;
+    }
+
+    /**
+     * Рисует очередной кадр логотипа и продвигает нарастание/затухание.
+     * Не зависит от окна, поэтому может рисовать и во внеэкранное изображение.
+     * @param width ширина области рисования.
+     * @param height высота области рисования.
+     */
+    public void paintFrame(Graphics2D g2D, int width, int height) {
+        if (isBreaked) {
+            return;
+        }
+        long now = System.nanoTime();
+        LogoImageCache.Entry entry = imageCache.get(picCounter);
+        if (entry != null) {
+            logoBackColor = entry.getBackColor();
+        }
+        updateAlpha(now);
+
+        Color background = bStyle == BACK_STYLE.ASIS ? logoBackColor : bStyle == BACK_STYLE.COLOR ? (color == null ? Color.MAGENTA : color) : null;
+        BufferedImage image = entry != null ? entry.getImage() : pendingImage(now);
+
+        renderer.setAccelerated(activeRendering);
+        if (entry == null && image != null) {
+            Dimension size = LogoImageCache.fitSize(image.getWidth(), image.getHeight(), screen, imStyle);
+            renderer.render(g2D, width, height, background, image, size.width, size.height, alphaGrad, cornerLabelText, customFont);
+        } else {
+            renderer.render(g2D, width, height, background, image, alphaGrad, cornerLabelText, customFont);
+        }
+
+        if (!rising && alphaGrad == 0) {
+            loadNextImage();
+        }
+        frameStats.frame(now, System.nanoTime(), fps);
+    }
+
+    /**
+     * Прозрачность картинки считается по прошедшему времени, а не по числу отрисованных кадров:
+     * нарастание за fadeInTime, показ до imageShowTime от появления картинки и затухание за fadeOutTime.
+     */
+    private void updateAlpha(long now) {
+        if (imageStartNanos == 0) {
+            imageStartNanos = now;
+        }
+        long shown = TimeUnit.NANOSECONDS.toMillis(now - imageStartNanos);
+        if (rising) {
+            alphaGrad = fadeInTime <= 0 ? 1f : Math.min(1f, (float) shown / fadeInTime);
+            if (alphaGrad >= 1f) {
+                rising = false;
+                hiding = true;
+            }
+        } else if (hiding && shown > imageShowTime) {
+            if (hideStartNanos == 0) {
+                hideStartNanos = now;
+            }
+            long hidden = TimeUnit.NANOSECONDS.toMillis(now - hideStartNanos);
+            alphaGrad = fadeOutTime <= 0 ? 0f : Math.max(0f, 1f - (float) hidden / fadeOutTime);
+            if (alphaGrad <= 0f) {
+                hiding = false;
+            }
+        }
+    }
+
+    /**
+     * Картинка, пока подготовленной еще нет: исходная картинка масштабируется на лету, а ленивая не рисуется вовсе
+     * и её показ (нарастание) откладывается. Подготовленная картинка рисуется простым копированием.
+     * @return исходная картинка для масштабирования или null - ничего не рисовать.
+     */
+    private BufferedImage pendingImage(long now) {
+        prepareImage(picCounter);
+        if (imageCache.isFailed(picCounter)) {
+            Out.Print(FoxLogo.class, LEVEL.INFO, "The logo image #" + picCounter + " can not be prepared and will be skipped.");
+            alphaGrad = 0;
+            rising = false;
+        } else if (images != null) {
+            return images[picCounter];
+        } else {
+            imageStartNanos = now;
+        }
+        return null;
+    }
+
+    /**
+     * Ставит в фоновую подготовку картинку с индексом {@code index}, если она есть.
+     */
+    private void prepareImage(int index) {
+        if (index < getImagesCount()) {
+            Supplier<BufferedImage> source;
+            if (imageSources != null) {
+                source = imageSources.get(index);
+            } else {
+                BufferedImage image = images[index];
+                source = () -> image;
+            }
+            imageCache.prepare(index, source, screen, imStyle, graphicsConfiguration(), hightQualityMode);
+        }
+    }
+
+    public int getImagesCount() {
+        return imageSources != null ? imageSources.size() : images == null ? 0 : images.length;
+    }
+
+    private GraphicsConfiguration graphicsConfiguration() {
+        if (logoFrame != null) {
+            return logoFrame.getGraphicsConfiguration();
+        }
+        return GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
     }
 
     private void inAc(JFrame logo) {
@@ -210,13 +376,22 @@ public class FoxLogo implements Runnable {
     private void loadNextImage() {
         picCounter++;
 
-        if (picCounter >= images.length) {
+        imageCache.release(picCounter - 1);
+        if (picCounter >= getImagesCount()) {
             isBreaked = true;
         } else {
+            prepareImage(picCounter);
+            prepareImage(picCounter + 1);
             timeStamp = System.currentTimeMillis();
-            raster = images[picCounter].getRaster();
-            Object data = raster.getDataElements(1, images[picCounter].getHeight() / 2, null);
-            logoBackColor = new Color(images[picCounter].getColorModel().getRGB(data), true);
+            imageStartNanos = System.nanoTime();
+            hideStartNanos = 0;
+            rising = true;
+            hiding = false;
+            if (images != null) {
+                raster = images[picCounter].getRaster();
+                Object data = raster.getDataElements(1, images[picCounter].getHeight() / 2, null);
+                logoBackColor = new Color(images[picCounter].getColorModel().getRGB(data), true);
+            }
             alphaGrad = 0;
         }
     }
@@ -0,0 +1,93 @@
+package fox;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика кадров логотипа: среднее и p99 времени отрисовки кадра (p99 - по последним {@value #WINDOW} кадрам),
+ * пропущенные относительно целевой частоты кадры и время, потраченное на масштабирование картинок.
+ */
+public class FrameStats {
+    public static final int WINDOW = 1024;
+
+    private final long[] window = new long[WINDOW];
+    private int windowSize = 0;
+    private int windowPos = 0;
+    private long frames = 0;
+    private long totalRenderNanos = 0;
+    private long droppedFrames = 0;
+    private long lastStartNanos = 0;
+    private final LongAdder scalingNanos = new LongAdder();
+
+    /**
+     * Учитывает отрисованный кадр.
+     * @param startNanos начало отрисовки по {@link System#nanoTime()}.
+     * @param endNanos конец отрисовки.
+     * @param fps целевая частота кадров.
+     */
+    synchronized void frame(long startNanos, long endNanos, int fps) {
+        long renderNanos = endNanos - startNanos;
+        frames++;
+        totalRenderNanos += renderNanos;
+        window[windowPos] = renderNanos;
+        windowPos = (windowPos + 1) % WINDOW;
+        windowSize = Math.min(WINDOW, windowSize + 1);
+
+        if (lastStartNanos != 0 && fps > 0) {
+            long period = TimeUnit.SECONDS.toNanos(1) / fps;
+            long interval = startNanos - lastStartNanos;
+            // кадр считается пропущенным, если интервал больше полутора периодов:
+            if (interval > period + period / 2) {
+                droppedFrames += (interval + period / 2) / period - 1;
+            }
+        }
+        lastStartNanos = startNanos;
+    }
+
+    void scaled(long nanos) {
+        scalingNanos.add(nanos);
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized double getAverageMillis() {
+        return frames == 0 ? 0d : totalRenderNanos / (double) frames / 1_000_000d;
+    }
+
+    public synchronized double getP99Millis() {
+        if (windowSize == 0) {
+            return 0d;
+        }
+        long[] sorted = Arrays.copyOf(window, windowSize);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(windowSize * 0.99d) - 1;
+        return sorted[Math.max(0, rank)] / 1_000_000d;
+    }
+
+    public double getScalingMillis() {
+        return scalingNanos.sum() / 1_000_000d;
+    }
+
+    public synchronized void reset() {
+        windowSize = 0;
+        windowPos = 0;
+        frames = 0;
+        totalRenderNanos = 0;
+        droppedFrames = 0;
+        lastStartNanos = 0;
+        scalingNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("frames=%d avg=%.2fms p99=%.2fms dropped=%d scaling=%.1fms",
+                getFrames(), getAverageMillis(), getP99Millis(), getDroppedFrames(), getScalingMillis());
+    }
+}
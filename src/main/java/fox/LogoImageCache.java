@@ -0,0 +1,190 @@
+package fox;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Картинки логотипа, заранее приведенные к итоговому размеру и к формату, совместимому с экраном.
+ * Декодирование (для ленивых источников) и подготовка идут в фоновом потоке, пока на экране предыдущая картинка,
+ * так что кадр сводится к простому копированию. Исходная картинка после подготовки не хранится.
+ */
+public class LogoImageCache {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "FoxLogo-prepare");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+    private final Map<Integer, CompletableFuture<Entry>> prepared = new ConcurrentHashMap<>();
+    private final FrameStats stats;
+
+    /**
+     * @param stats статистика, в которую пишется время масштабирования, или null.
+     */
+    public LogoImageCache(FrameStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Итоговый размер картинки для стиля: DEFAULT - как есть, FILL - во весь экран,
+     * WRAP - вписать в экран с сохранением пропорций (только уменьшение).
+     */
+    public static Dimension fitSize(int width, int height, Dimension screen, FoxLogo.IMAGE_STYLE style) {
+        if (style == FoxLogo.IMAGE_STYLE.FILL) {
+            return new Dimension(screen.width, screen.height);
+        }
+        if (style == FoxLogo.IMAGE_STYLE.WRAP && (width > screen.width || height > screen.height)) {
+            double scale = Math.min((double) screen.width / width, (double) screen.height / height);
+            return new Dimension(Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale)));
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Ставит декодирование и подготовку картинки в фоновую очередь (повторный вызов для того же индекса ничего не делает).
+     * @param source источник картинки, вызывается в фоновом потоке.
+     * @param screen размер экрана для расчета итогового размера по стилю.
+     * @param gc конфигурация экрана или null - обычный ARGB/RGB формат (headless).
+     * @param isHighQuality бикубическое масштабирование вместо билинейного.
+     */
+    public void prepare(int index, Supplier<BufferedImage> source, Dimension screen, FoxLogo.IMAGE_STYLE style,
+                        GraphicsConfiguration gc, boolean isHighQuality) {
+        prepared.computeIfAbsent(index, i -> CompletableFuture.supplyAsync(() -> {
+            BufferedImage image = source.get();
+            if (image == null) {
+                throw new IllegalStateException("The logo image #" + index + " is not decoded.");
+            }
+            Dimension size = fitSize(image.getWidth(), image.getHeight(), screen, style);
+            return new Entry(scale(image, size, gc, isHighQuality), edgeColor(image));
+        }, worker));
+    }
+
+    /**
+     * @return подготовленная картинка или null, если она еще не готова (или подготовка не удалась).
+     */
+    public Entry get(int index) {
+        CompletableFuture<Entry> future = prepared.get(index);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * @return true, если картинку не удалось декодировать или подготовить.
+     */
+    public boolean isFailed(int index) {
+        CompletableFuture<Entry> future = prepared.get(index);
+        return future != null && future.isCompletedExceptionally();
+    }
+
+    /**
+     * Ждет подготовки картинки.
+     */
+    public Entry await(int index) {
+        CompletableFuture<Entry> future = prepared.get(index);
+        return future == null ? null : future.join();
+    }
+
+    public void release(int index) {
+        CompletableFuture<Entry> future = prepared.remove(index);
+        if (future != null) {
+            future.cancel(false);
+            Entry entry = future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+            if (entry != null) {
+                entry.image.flush();
+            }
+        }
+    }
+
+    /**
+     * @return сколько картинок сейчас хранится или готовится.
+     */
+    public int size() {
+        return prepared.size();
+    }
+
+    public void close() {
+        worker.shutdownNow();
+        for (Integer index : prepared.keySet()) {
+            release(index);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, Dimension size, GraphicsConfiguration gc, boolean isHighQuality) {
+        long start = System.nanoTime();
+        int transparency = source.getColorModel().getTransparency();
+        Object interpolation = isHighQuality ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+
+        // сильное уменьшение делается последовательными уменьшениями вдвое, иначе билинейный фильтр теряет детали:
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        while (w / 2 >= size.width && h / 2 >= size.height) {
+            w /= 2;
+            h /= 2;
+            current = draw(current, w, h, newImage(null, w, h, transparency), interpolation);
+        }
+        BufferedImage result = draw(current, size.width, size.height, newImage(gc, size.width, size.height, transparency), interpolation);
+
+        if (stats != null) {
+            stats.scaled(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Цвет фона для стиля ASIS - пиксель у левого края на середине высоты.
+     */
+    private static Color edgeColor(BufferedImage image) {
+        Object data = image.getRaster().getDataElements(Math.min(1, image.getWidth() - 1), image.getHeight() / 2, null);
+        return new Color(image.getColorModel().getRGB(data), true);
+    }
+
+    private static BufferedImage newImage(GraphicsConfiguration gc, int width, int height, int transparency) {
+        if (gc != null) {
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, BufferedImage target, Object interpolation) {
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    public static final class Entry {
+        private final BufferedImage image;
+        private final Color backColor;
+
+        Entry(BufferedImage image, Color backColor) {
+            this.image = image;
+            this.backColor = backColor;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public Color getBackColor() {
+            return backColor;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package fox;
+
+import lombok.Getter;
+import lombok.Setter;
+import render.FoxRender;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Сборка кадра логотипа в любой {@link Graphics2D}: окно, {@link java.awt.image.BufferStrategy}
+ * или внеэкранный {@link BufferedImage} (в том числе при {@code java.awt.headless=true}).
+ * Не знает ни про окно, ни про время: что и с какой прозрачностью рисовать, решает {@link FoxLogo}.
+ */
+public class LogoRenderer {
+    /**
+     * Рисовать картинку из её копии в видеопамяти ({@link VolatileImage}), если устройство это позволяет.
+     */
+    @Getter
+    @Setter
+    private boolean accelerated = false;
+
+    private VolatileImage volatileCopy;
+    private BufferedImage volatileSource;
+
+    /**
+     * Кадр целиком: фон, картинка по центру области с прозрачностью {@code alpha} и подпись в углу.
+     * @param background цвет фона или null - не закрашивать (прозрачное окно).
+     * @param image уже подготовленная картинка итогового размера или null.
+     */
+    public void render(Graphics2D g2D, int width, int height, Color background, BufferedImage image, float alpha, String label, Font font) {
+        render(g2D, width, height, background, image,
+                image == null ? 0 : image.getWidth(), image == null ? 0 : image.getHeight(), alpha, label, font);
+    }
+
+    /**
+     * То же, но картинка рисуется с размером {@code drawWidth x drawHeight} (масштабируется на лету, если он другой).
+     */
+    public void render(Graphics2D g2D, int width, int height, Color background, BufferedImage image, int drawWidth, int drawHeight,
+                       float alpha, String label, Font font) {
+        FoxRender.setRender(g2D, FoxRender.RENDER.MED);
+        drawBackground(g2D, width, height, background);
+        g2D.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        if (image != null) {
+            drawImage(g2D, width, height, image, drawWidth, drawHeight);
+        }
+        drawLabel(g2D, label, font);
+    }
+
+    public void drawBackground(Graphics2D g2D, int width, int height, Color background) {
+        if (background != null) {
+            g2D.setColor(background);
+            g2D.fillRect(0, 0, width, height);
+        }
+    }
+
+    /**
+     * Рисует картинку по центру области. Если размер картинки совпадает с {@code drawWidth x drawHeight}, это простое копирование.
+     */
+    public void drawImage(Graphics2D g2D, int width, int height, BufferedImage image, int drawWidth, int drawHeight) {
+        Image source = image;
+        if (accelerated && drawWidth == image.getWidth() && drawHeight == image.getHeight()) {
+            source = acceleratedImage(image, g2D.getDeviceConfiguration());
+        }
+        g2D.drawImage(source, width / 2 - drawWidth / 2, height / 2 - drawHeight / 2, drawWidth, drawHeight, null);
+    }
+
+    public void drawLabel(Graphics2D g2D, String label, Font font) {
+        if (label != null && !label.isBlank()) {
+            g2D.setColor(Color.BLACK);
+            if (font != null) {
+                g2D.setFont(font);
+            }
+            g2D.drawString(label, 30, 30);
+        }
+    }
+
+    /**
+     * Освобождает копию картинки в видеопамяти.
+     */
+    public void dispose() {
+        if (volatileCopy != null) {
+            volatileCopy.flush();
+            volatileCopy = null;
+            volatileSource = null;
+        }
+    }
+
+    /**
+     * @return копия картинки в видеопамяти; восстанавливается, если система сбросила её содержимое.
+     */
+    private Image acceleratedImage(BufferedImage source, GraphicsConfiguration gc) {
+        if (gc == null) {
+            return source;
+        }
+        for (int attempt = 0; attempt < 3; attempt++) {
+            int state = volatileCopy == null || volatileSource != source ? VolatileImage.IMAGE_INCOMPATIBLE : volatileCopy.validate(gc);
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                dispose();
+                volatileCopy = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), source.getTransparency());
+                volatileSource = source;
+                copyToVolatile(source);
+            } else if (state == VolatileImage.IMAGE_RESTORED) {
+                copyToVolatile(source);
+            }
+            if (!volatileCopy.contentsLost()) {
+                return volatileCopy;
+            }
+        }
+        return source;
+    }
+
+    private void copyToVolatile(BufferedImage source) {
+        Graphics2D g = volatileCopy.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+    }
+}
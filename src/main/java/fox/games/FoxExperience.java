@@ -2,6 +2,12 @@ package fox.games;
 
 
 public class FoxExperience {
+	/**
+	 * Наибольший уровень, для которого {@link #getExp(int[], int[], double[])} берет готовое значение из таблицы.
+	 * Уровни вне диапазона 0..TABLE_MAX_LEVEL считаются по формуле.
+	 */
+	public static final int TABLE_MAX_LEVEL = 127;
+	private static final int TABLE_SHIFT = 7;
 	
 	private FoxExperience() {}
 
@@ -21,4 +27,76 @@ public class FoxExperience {
 	public static double getExp(float playerLVL, float aimLVL, float mod1, float mod2) {
 		return mod1 * (mod2 + aimLVL - playerLVL) / (mod2 + playerLVL);
 	}
+
+	/**
+	 * Пакетный {@link #getExp(int, int)} для массовой раздачи опыта (AoE, вайп рейда).
+	 * Уровни до {@link #TABLE_MAX_LEVEL} берутся из таблицы, результаты совпадают со скалярным методом бит в бит.
+	 * @param playerLVLs уровни игроков.
+	 * @param aimLVLs уровни целей (пара - элементы с одинаковым индексом).
+	 * @param out массив результатов, не короче входных.
+	 */
+	public static void getExp(int[] playerLVLs, int[] aimLVLs, double[] out) {
+		int n = checkLength(playerLVLs.length, aimLVLs.length, out.length);
+		double[] table = Table.EXP;
+		for (int i = 0; i < n; i++) {
+			int player = playerLVLs[i];
+			int aim = aimLVLs[i];
+			out[i] = ((player | aim) >>> TABLE_SHIFT) == 0 ? table[player << TABLE_SHIFT | aim] : getExp(player, aim);
+		}
+	}
+
+	/**
+	 * Опыт многих игроков за одну цель (например, всем участникам боя с боссом).
+	 * @param out массив результатов, не короче {@code playerLVLs}.
+	 */
+	public static void getExp(int[] playerLVLs, int aimLVL, double[] out) {
+		int n = checkLength(playerLVLs.length, playerLVLs.length, out.length);
+		if (aimLVL < 0 || aimLVL > TABLE_MAX_LEVEL) {
+			for (int i = 0; i < n; i++) {
+				out[i] = getExp(playerLVLs[i], aimLVL);
+			}
+			return;
+		}
+		double[] table = Table.EXP;
+		for (int i = 0; i < n; i++) {
+			int player = playerLVLs[i];
+			out[i] = (player >>> TABLE_SHIFT) == 0 ? table[player << TABLE_SHIFT | aimLVL] : getExp(player, aimLVL);
+		}
+	}
+
+	/**
+	 * Пакетный {@link #getExp(float, float, float, float)}. Цикл без ветвлений и вызовов,
+	 * поэтому JIT может векторизовать его; результаты совпадают со скалярным методом бит в бит.
+	 * @param out массив результатов, не короче входных.
+	 */
+	public static void getExp(float[] playerLVLs, float[] aimLVLs, float mod1, float mod2, double[] out) {
+		int n = checkLength(playerLVLs.length, aimLVLs.length, out.length);
+		for (int i = 0; i < n; i++) {
+			float player = playerLVLs[i];
+			out[i] = mod1 * (mod2 + aimLVLs[i] - player) / (mod2 + player);
+		}
+	}
+
+	private static int checkLength(int players, int aims, int out) {
+		if (players != aims || out < players) {
+			throw new IllegalArgumentException(String.format(
+					"FoxExperience.getExp: Wrong batch sizes (players %d, aims %d, out %d).", players, aims, out));
+		}
+		return players;
+	}
+
+	/**
+	 * Таблица опыта для всех пар уровней 0..TABLE_MAX_LEVEL, создается при первом пакетном вызове.
+	 */
+	private static final class Table {
+		private static final double[] EXP = new double[(TABLE_MAX_LEVEL + 1) << TABLE_SHIFT];
+
+		static {
+			for (int player = 0; player <= TABLE_MAX_LEVEL; player++) {
+				for (int aim = 0; aim <= TABLE_MAX_LEVEL; aim++) {
+					EXP[player << TABLE_SHIFT | aim] = getExp(player, aim);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,112 @@
+package fox.games;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Таблица прогрессии: сколько всего опыта нужно набрать для каждого уровня.
+ * Строится один раз из формулы {@link FoxExperience}, после чего уровень по сумме опыта находится двоичным поиском.
+ * Неизменяема и потокобезопасна.
+ */
+public class LevelTable {
+	/**
+	 * Число убийств мобов своего уровня для перехода на следующий уровень, как в {@link FoxExperience#getExp(int, int)}:
+	 * 10 на первом, 20 на десятом и дальше примерно на 10 за каждые 9 уровней.
+	 */
+	public static final IntUnaryOperator DEFAULT_KILLS = level -> 10 + (10 * (level - 1) + 4) / 9;
+
+	private final long[] thresholds;
+
+	private LevelTable(long[] thresholds) {
+		this.thresholds = thresholds;
+	}
+
+	/**
+	 * Таблица по формуле {@link FoxExperience#getExp(int, int)} и {@link #DEFAULT_KILLS}.
+	 * @param maxLevel последний уровень.
+	 */
+	public static LevelTable standard(int maxLevel) {
+		return fromKills(maxLevel, DEFAULT_KILLS);
+	}
+
+	/**
+	 * @param killsToNext сколько убийств мобов своего уровня нужно на уровне L, чтобы перейти на L + 1.
+	 */
+	public static LevelTable fromKills(int maxLevel, IntUnaryOperator killsToNext) {
+		long[] xpToNext = new long[Math.max(0, maxLevel - 1)];
+		for (int level = 1; level < maxLevel; level++) {
+			xpToNext[level - 1] = Math.round(killsToNext.applyAsInt(level) * FoxExperience.getExp(level, level));
+		}
+		return of(xpToNext);
+	}
+
+	/**
+	 * Таблица по формуле {@link FoxExperience#getExp(float, float, float, float)} с модификаторами.
+	 */
+	public static LevelTable fromKills(int maxLevel, float mod1, float mod2, IntUnaryOperator killsToNext) {
+		long[] xpToNext = new long[Math.max(0, maxLevel - 1)];
+		for (int level = 1; level < maxLevel; level++) {
+			xpToNext[level - 1] = Math.round(killsToNext.applyAsInt(level) * FoxExperience.getExp(level, level, mod1, mod2));
+		}
+		return of(xpToNext);
+	}
+
+	/**
+	 * @param xpToNext опыт, нужный на уровне {@code i + 1} для перехода на следующий; все значения положительные.
+	 */
+	public static LevelTable of(long[] xpToNext) {
+		long[] thresholds = new long[xpToNext.length + 1];
+		for (int i = 0; i < xpToNext.length; i++) {
+			if (xpToNext[i] <= 0) {
+				throw new IllegalArgumentException(String.format("LevelTable: The XP to the level %d must be positive, but was %d.", i + 2, xpToNext[i]));
+			}
+			thresholds[i + 1] = Math.addExact(thresholds[i], xpToNext[i]);
+		}
+		return new LevelTable(thresholds);
+	}
+
+	public int getMaxLevel() {
+		return thresholds.length;
+	}
+
+	/**
+	 * @return уровень (от 1 до {@link #getMaxLevel()}) для суммы опыта {@code totalXp}, за O(log n).
+	 */
+	public int getLevel(long totalXp) {
+		if (totalXp <= 0) {
+			return 1;
+		}
+		int index = Arrays.binarySearch(thresholds, totalXp);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	/**
+	 * @return сколько всего опыта нужно для достижения уровня {@code level}.
+	 */
+	public long getXpForLevel(int level) {
+		if (level < 1 || level > thresholds.length) {
+			throw new IllegalArgumentException("LevelTable: Wrong level " + level + " (1.." + thresholds.length + ").");
+		}
+		return thresholds[level - 1];
+	}
+
+	/**
+	 * @return сколько опыта осталось до следующего уровня (0 на последнем уровне).
+	 */
+	public long getXpToNextLevel(long totalXp) {
+		int level = getLevel(totalXp);
+		return level == thresholds.length ? 0 : thresholds[level] - Math.max(0, totalXp);
+	}
+
+	/**
+	 * @return доля пройденного текущего уровня от 0 до 1 (1 на последнем уровне).
+	 */
+	public double getProgress(long totalXp) {
+		int level = getLevel(totalXp);
+		if (level == thresholds.length) {
+			return 1D;
+		}
+		long from = thresholds[level - 1];
+		return (double) (Math.max(0, totalXp) - from) / (thresholds[level] - from);
+	}
+}
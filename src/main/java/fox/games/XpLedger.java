@@ -0,0 +1,99 @@
+package fox.games;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счета опыта игроков с плотными номерами 0..capacity-1, в которые могут одновременно зачислять опыт многие игровые потоки.
+ * Зачисление - атомарный CAS без блокировок, сумма опыта насыщается на {@link Long#MAX_VALUE}; счет каждого игрока лежит в своей кэш-линии,
+ * так что потоки, начисляющие опыт разным игрокам, не мешают друг другу.
+ */
+public class XpLedger {
+	private static final int STRIDE = 8; // 8 long = 64 байта
+
+	private final LevelTable levels;
+	private final int capacity;
+	private final AtomicLongArray accounts;
+
+	/**
+	 * @param levels таблица прогрессии для пересчета опыта в уровни.
+	 * @param capacity число игроков.
+	 */
+	public XpLedger(LevelTable levels, int capacity) {
+		if (levels == null || capacity < 1 || (long) capacity * STRIDE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("XpLedger: Wrong levels table or capacity " + capacity + ".");
+		}
+		this.levels = levels;
+		this.capacity = capacity;
+		this.accounts = new AtomicLongArray(capacity * STRIDE);
+	}
+
+	public LevelTable getLevels() {
+		return levels;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Зачисляет опыт игроку.
+	 * @param xp неотрицательный опыт.
+	 * @return на сколько уровней вырос игрок после этого зачисления (обычно 0).
+	 */
+	public int credit(int playerId, long xp) {
+		if (xp < 0) {
+			throw new IllegalArgumentException("XpLedger.credit: The XP must not be negative, but was " + xp + ".");
+		}
+		int slot = slot(playerId);
+		long before;
+		long after;
+		do {
+			before = accounts.get(slot);
+			after = before > Long.MAX_VALUE - xp ? Long.MAX_VALUE : before + xp;
+		} while (!accounts.compareAndSet(slot, before, after));
+		return levels.getLevel(after) - levels.getLevel(before);
+	}
+
+	/**
+	 * Пакетное зачисление, например результатов {@link FoxExperience#getExp(int[], int[], double[])}. Опыт округляется до целого.
+	 * Отрицательный опыт (игрок выше цели больше чем на 10 уровней) не зачисляется.
+	 * @return сколько зачислений подняло уровень игрока.
+	 */
+	public int credit(int[] playerIds, double[] xp) {
+		if (xp.length < playerIds.length) {
+			throw new IllegalArgumentException(String.format("XpLedger.credit: Wrong batch sizes (players %d, xp %d).", playerIds.length, xp.length));
+		}
+		int levelUps = 0;
+		for (int i = 0; i < playerIds.length; i++) {
+			if (xp[i] > 0 && credit(playerIds[i], Math.round(xp[i])) > 0) {
+				levelUps++;
+			}
+		}
+		return levelUps;
+	}
+
+	public long getXp(int playerId) {
+		return accounts.get(slot(playerId));
+	}
+
+	public int getLevel(int playerId) {
+		return levels.getLevel(getXp(playerId));
+	}
+
+	/**
+	 * Устанавливает сумму опыта игрока (загрузка сохранения, сброс).
+	 */
+	public void setXp(int playerId, long totalXp) {
+		if (totalXp < 0) {
+			throw new IllegalArgumentException("XpLedger.setXp: The XP must not be negative, but was " + totalXp + ".");
+		}
+		accounts.set(slot(playerId), totalXp);
+	}
+
+	private int slot(int playerId) {
+		if (playerId < 0 || playerId >= capacity) {
+			throw new IndexOutOfBoundsException("XpLedger: Wrong player id " + playerId + " (0.." + (capacity - 1) + ").");
+		}
+		return playerId * STRIDE;
+	}
+}
@@ -0,0 +1,48 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Чтение уже декодированного PCM из памяти (кэш, банк звуков) без копирования данных трека.
+ */
+class BufferPcmSource implements PcmSource {
+    private final ByteBuffer data;
+    private final AudioFormat format;
+
+    BufferPcmSource(ByteBuffer data, AudioFormat format) {
+        this.data = data;
+        this.format = format;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return data.limit() / format.getFrameSize();
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return true;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (!data.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(length, data.remaining());
+        data.get(buffer, offset, n);
+        return n;
+    }
+
+    @Override
+    public void seek(long frame) {
+        long position = frame * format.getFrameSize();
+        data.position((int) Math.max(0, Math.min(position, data.limit())));
+    }
+}
@@ -0,0 +1,97 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static fox.Out.Print;
+
+/**
+ * Поток управления плеера: разбирает {@link CommandQueue} и выполняет команды по одной, в порядке поступления.
+ * Все изменения списков голосов плеера происходят только в этом потоке, поэтому им не нужны блокировки.
+ */
+class CommandDispatcher implements Runnable {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final String name;
+    private final CommandQueue<Runnable> queue;
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final Thread thread;
+    private volatile boolean isClosed = false;
+
+    CommandDispatcher(@NonNull String name, @NonNull PlayerScheduler scheduler, int capacity) {
+        this.name = name;
+        this.queue = new CommandQueue<>(capacity);
+        this.thread = scheduler.newThread("-control", this);
+        thread.start();
+    }
+
+    /**
+     * Ставит команду в очередь, никогда не блокируя вызывающий поток.
+     * @return false, если очередь заполнена (или диспетчер закрыт) и команда отброшена.
+     */
+    boolean submit(@NonNull Runnable command) {
+        if (isClosed || !queue.offer(command)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Как {@link #submit(Runnable)}, но для служебных команд: отказ не учитывается в {@link #getDroppedCount()}.
+     */
+    boolean offer(@NonNull Runnable command) {
+        if (isClosed || !queue.offer(command)) {
+            return false;
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    boolean isDispatchThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void run() {
+        while (!isClosed) {
+            drain();
+            LockSupport.park(this);
+        }
+    }
+
+    private void drain() {
+        Runnable command;
+        while (!isClosed && (command = queue.poll()) != null) {
+            try {
+                command.run();
+            } catch (Exception e) {
+                Print(getClass(), LEVEL.INFO, "CommandDispatcher '" + name + "': The command was failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Останавливает поток управления; команды, оставшиеся в очереди, не выполняются.
+     */
+    void close(long timeoutMs) {
+        isClosed = true;
+        LockSupport.unpark(thread);
+        if (!isDispatchThread()) {
+            try {
+                thread.join(Math.max(1, timeoutMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package fox.player;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограниченная lock-free очередь "много писателей - один читатель" на кольцевом буфере
+ * (схема с номерами последовательностей в каждой ячейке). Писатели никогда не блокируются:
+ * при заполненной очереди {@link #offer} сразу возвращает false.
+ */
+class CommandQueue<T> {
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final int mask;
+    private long head = 0; // только поток-читатель
+
+    /**
+     * @param capacity емкость, округляется вверх до степени двойки.
+     */
+    CommandQueue(int capacity) {
+        if (capacity < 2) {
+            throw new FoxPlayerException("CommandQueue: The capacity must be at least 2, but was " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return false, если очередь заполнена и элемент не добавлен.
+     */
+    boolean offer(T item) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        buffer[index] = item;
+        sequences.set(index, pos + 1); // публикует элемент для читателя
+        return true;
+    }
+
+    /**
+     * Вызывается только из потока-читателя.
+     * @return следующий элемент или null, если очередь пуста.
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = (T) buffer[index];
+        buffer[index] = null;
+        sequences.set(index, head + buffer.length);
+        head++;
+        return item;
+    }
+}
@@ -0,0 +1,101 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Потоковое декодирование файла в формат {@link PlayThread.DefaultFormat01}.
+ * Файл читается через {@link FileChannel} крупными блоками.
+ * Перемотка назад переоткрывает файл и пропускает данные до нужного кадра.
+ */
+class FilePcmSource implements PcmSource {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final File track;
+    private AudioInputStream dataIn;
+    private AudioFormat format;
+    private int opens = 0;
+
+    FilePcmSource(File track) throws Exception {
+        this.track = track;
+        reopen();
+    }
+
+    private void reopen() throws Exception {
+        close();
+        opens++;
+        FileChannel channel = FileChannel.open(track.toPath(), StandardOpenOption.READ);
+        AudioInputStream in = null;
+        try {
+            in = AudioSystem.getAudioInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_BYTES));
+            if (in == null) {
+                throw new FoxPlayerException("Media.musicPlay: The track '" + track.getName() + "' has problem with input stream?..");
+            }
+            format = new PlayThread.DefaultFormat01(in.getFormat());
+            dataIn = AudioSystem.getAudioInputStream(format, in);
+        } catch (Exception e) {
+            // поток файла закрывает и канал:
+            if (in != null) {
+                in.close();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return dataIn.getFrameLength() == AudioSystem.NOT_SPECIFIED ? -1 : dataIn.getFrameLength();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return dataIn.read(buffer, offset, length);
+    }
+
+    @Override
+    public void seek(long frame) throws IOException {
+        try {
+            reopen();
+        } catch (IOException ioe) {
+            throw ioe;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        long toSkip = frame * format.getFrameSize();
+        while (toSkip > 0) {
+            long skipped = dataIn.skip(toSkip);
+            if (skipped <= 0) {
+                break;
+            }
+            toSkip -= skipped;
+        }
+    }
+
+    /**
+     * @return сколько раз файл был открыт (первое открытие и перемотки).
+     */
+    int getOpens() {
+        return opens;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dataIn != null) {
+            dataIn.close();
+            dataIn = null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.SourceDataLine;
+
+import static fox.Out.Print;
+
+/**
+ * Выбор единого формата вывода, который поддерживает звуковое устройство.
+ * Первым пробуется 44.1 кГц - обычная частота игровых ресурсов, такие треки играют без ресэмплинга.
+ */
+public class FormatNegotiator {
+    private static final AudioFormat[] PREFERRED = {
+            new AudioFormat(44100f, 16, 2, true, false),
+            new AudioFormat(48000f, 16, 2, true, false),
+            new AudioFormat(44100f, 16, 1, true, false),
+            new AudioFormat(22050f, 16, 2, true, false),
+    };
+
+    private FormatNegotiator() {}
+
+    /**
+     * @param preferred желаемые форматы в порядке приоритета (пусто - стандартный список).
+     * @return первый формат, для которого в системе есть линия, или null, если не подошел ни один.
+     */
+    public static AudioFormat negotiate(AudioFormat... preferred) {
+        AudioFormat[] candidates = preferred == null || preferred.length == 0 ? PREFERRED : preferred;
+        for (AudioFormat format : candidates) {
+            if (PcmSource.isPcm16le(format) && AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, format))) {
+                Print(FormatNegotiator.class, LEVEL.DEBUG, "FormatNegotiator: The output format is " + format);
+                return format;
+            }
+        }
+        Print(FormatNegotiator.class, LEVEL.INFO, "FormatNegotiator: No one of the preferred output formats is supported by the system.");
+        return null;
+    }
+}
@@ -1,60 +1,240 @@
 package fox.player;
 
 import fox.Out.LEVEL;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
 import java.io.File;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static fox.Out.Print;
 
+/**
+ * Плеер треков. Управляющие методы (play, crossfade, stop, mute, setVolume) не блокируют вызывающий поток:
+ * они только ставят команду в ограниченную lock-free очередь, которую разбирает поток управления плеера.
+ * Если очередь заполнена, команда отбрасывается и учитывается в {@link #getDroppedCommands()}.
+ * Внутренние части плеера (кэш, очередь команд, пул линий, набор голосов) наружу не отдаются, ими управляют методы плеера.
+ */
 @Data
 public class FoxPlayer implements iPlayer {
-    private static final Map<String, File> trackMap = new LinkedHashMap<>();
     private static VolumeConverter vConv = new VolumeConverter();
     private volatile float currentPlayerVolume = vConv.getMinimum();
     private volatile boolean isCurrentPlayerMute = false;
 
     private String name;
-    private String lastTrack;
+    private volatile String lastTrack;
 
-    private ArrayList<PlayThread> threadList = new ArrayList<>();
+    private final TrackLibrary library;
+    @Getter(AccessLevel.NONE)
+    private final List<SoundBank> banks = new CopyOnWriteArrayList<>();
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile PcmCache pcmCache;
+    private volatile SoftMixer mixer;
+    private volatile AudioFormat outputFormat;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile boolean isFormatNegotiated = false;
+    @Getter(AccessLevel.NONE)
+    private final PlayerScheduler scheduler;
+    @Getter(AccessLevel.NONE)
+    private final CommandDispatcher commands;
+    private final PlayerMetrics metrics;
+    /**
+     * Открытые линии, которые переходят от отыгравших треков к новым без повторного открытия устройства.
+     */
+    @Getter(AccessLevel.NONE)
+    private final LinePool linePool;
+    /**
+     * Правила воспроизведения по трекам: лимит экземпляров, интервал перезапуска, приоритет и общий лимит голосов.
+     * Здесь же ограниченный набор звучащих голосов, который меняется и читается только в потоке управления (см. CommandDispatcher).
+     */
+    @Getter(AccessLevel.NONE)
+    private final VoiceAllocator voiceAllocator = new VoiceAllocator();
+    @Getter(AccessLevel.NONE)
+    private final VoiceReaper reaper;
 
     private boolean isParallelPlayable = false;
     private boolean showLineInfo = false;
     private boolean loop = true;
 
+    private int fadeInMs = GainRamp.DEFAULT_FADE_IN_MS;
+    private int fadeOutMs = GainRamp.DEFAULT_FADE_OUT_MS;
+    private int volumeRampMs = GainRamp.DEFAULT_VOLUME_RAMP_MS;
+    /**
+     * Профиль задержки для треков, запущенных без явного профиля.
+     */
+    @NonNull
+    private LatencyProfile latencyProfile = LatencyProfile.DEFAULT;
+    /**
+     * Выросшие после опустошений копии адаптивных профилей этого плеера по исходному профилю (сами профили неизменяемы).
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<LatencyProfile, LatencyProfile> grownProfiles = new ConcurrentHashMap<>();
+
 
 
     public FoxPlayer(@NonNull String name) {
+        this(name, PlayerScheduler.DEFAULT_WORKERS);
+    }
+
+    /**
+     * @param maxWorkers максимальное число потоков воспроизведения этого плеера.
+     */
+    public FoxPlayer(@NonNull String name, int maxWorkers) {
+        this(name, maxWorkers, CommandDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param maxWorkers максимальное число потоков воспроизведения этого плеера.
+     * @param commandQueueCapacity емкость очереди команд (округляется до степени двойки).
+     */
+    public FoxPlayer(@NonNull String name, int maxWorkers, int commandQueueCapacity) {
         this.name = name;
+        this.scheduler = new PlayerScheduler(name, maxWorkers);
+        this.library = new TrackLibrary(scheduler, this::evict);
+        this.commands = new CommandDispatcher(name, scheduler, commandQueueCapacity);
+        this.metrics = new PlayerMetrics(name);
+        this.linePool = new LinePool(scheduler);
+        this.reaper = new VoiceReaper(name, voiceAllocator, commands);
     }
 
     public static VolumeConverter getVolumeConverter() {
         return vConv;
     }
 
+    /**
+     * Рекурсивно сканирует каталог в библиотеку плеера (см. {@link TrackLibrary}).
+     * Блокирует вызывающий поток до конца сканирования, но не мешает параллельным вызовам play.
+     */
     @Override
-    public synchronized void load(@NonNull Path audioDirectoryPath) {
-        File[] files = audioDirectoryPath.toFile().listFiles();
-        if (files == null || files.length == 0) {
+    public void load(@NonNull Path audioDirectoryPath) {
+        if (library.scan(audioDirectoryPath) == 0) {
             Print(getClass(), LEVEL.INFO, String.format("Media directory %s is empty?", audioDirectoryPath.toFile().getPath()));
             throw new FoxPlayerException(String.format("Media directory %s is empty?", audioDirectoryPath.toFile().getPath()));
         }
-        Arrays.stream(files).forEach(file -> add(file.getName().substring(0, file.getName().length() - 4), file));
+    }
+
+    /**
+     * То же, что {@link #load(Path)}, но в фоне, в потоке ввода-вывода плеера: запуск игры не ждет сканирования каталога.
+     */
+    @Override
+    public CompletableFuture<Void> loadAsync(@NonNull Path audioDirectoryPath) {
+        return CompletableFuture.runAsync(() -> load(audioDirectoryPath), scheduler::io);
+    }
+
+    /**
+     * Подключает банк звуков: его треки играют прямо из отображенного в память файла.
+     * При совпадении имен трек из банка важнее файла из библиотеки, но не важнее предзагруженного в кэш.
+     * @return открытый банк (для {@link #unloadBank(SoundBank)}).
+     */
+    public SoundBank loadBank(@NonNull Path bankFile) {
+        SoundBank bank = SoundBank.open(bankFile);
+        banks.add(bank);
+        Print(getClass(), LEVEL.DEBUG, String.format("FoxPlayer.loadBank: %d tracks was mapped from %s.", bank.size(), bankFile));
+        return bank;
+    }
+
+    public void unloadBank(@NonNull SoundBank bank) {
+        banks.remove(bank);
+    }
+
+    /**
+     * Готовит звуковую подсистему, чтобы первый звук в игре стартовал так же быстро, как последующие:
+     * загружает провайдеры {@link AudioSystem}, выбирает формат вывода и заранее открывает в пуле две линии
+     * для профиля задержки плеера. Блокирует вызывающий поток, вызывается при запуске игры.
+     */
+    public void warmUp() {
+        warmUp(latencyProfile, 2);
+    }
+
+    /**
+     * @param profile профиль задержки, для буфера которого открываются линии.
+     * @param lines сколько линий открыть заранее.
+     */
+    public void warmUp(@NonNull LatencyProfile profile, int lines) {
+        long start = System.nanoTime();
+        AudioSystem.getMixerInfo();
+        AudioSystem.getAudioFileTypes(); // загружает провайдеры чтения файлов
+        new GainRamp(0f).apply(new byte[64], 64, SoftMixer.DEFAULT_FORMAT); // и классы обработки PCM
+
+        int opened = 0;
+        AudioFormat format = getOutputFormat();
+        if (mixer == null && format != null && lines > 0) {
+            try {
+                opened = linePool.warmUp(format, getGrownProfile(profile).getBufferBytes(format), lines);
+            } catch (LineUnavailableException | RuntimeException e) {
+                Print(getClass(), LEVEL.INFO, "FoxPlayer.warmUp: The lines can not be opened: " + e.getMessage());
+            }
+        }
+        Print(getClass(), LEVEL.DEBUG, String.format("FoxPlayer.warmUp: %d line(s) was opened in %d ms.",
+                opened, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * @return профиль, с которым плеер сейчас запускает треки вместо {@code profile}: выросший после опустошений буфера
+     * или сам {@code profile}.
+     */
+    public LatencyProfile getGrownProfile(@NonNull LatencyProfile profile) {
+        return grownProfiles.getOrDefault(profile, profile);
+    }
+
+    /**
+     * Возвращает адаптивные профили плеера к исходным размерам буфера.
+     */
+    public void resetGrownProfiles() {
+        grownProfiles.clear();
+    }
+
+    boolean hasTrack(String trackName) {
+        return library.contains(trackName) || fromBanks(trackName) != null;
+    }
+
+    /**
+     * Текущая громкость плеера в dB (gain).
+     */
+    float getCurrentGain() {
+        return vConv.volumePercentToGain(currentPlayerVolume);
+    }
+
+    /**
+     * Создает офлайн-рендер треков этого плеера (библиотека, банки и кэш) без вывода на звуковую карту.
+     * @param format формат результата или null - формат вывода плеера ({@link SoftMixer#DEFAULT_FORMAT}, если он не выбран).
+     */
+    public OfflineRenderer offlineRenderer(AudioFormat format) {
+        if (format == null) {
+            format = outputFormat != null ? outputFormat : SoftMixer.DEFAULT_FORMAT;
+        }
+        return new OfflineRenderer(this, format);
+    }
+
+    private PcmTrack fromBanks(String trackName) {
+        for (SoundBank bank : banks) {
+            PcmTrack track = bank.get(trackName);
+            if (track != null) {
+                return track;
+            }
+        }
+        return null;
     }
 
     @Override
-    public synchronized void add(@NonNull String trackName, @NonNull File sourceFile) {
-        trackMap.put(trackName, sourceFile);
+    public void add(@NonNull String trackName, @NonNull File sourceFile) {
+        library.add(trackName, sourceFile);
     }
 
-    public synchronized void play(@NonNull String trackName) {
+    public void play(@NonNull String trackName) {
         try {
             this.play(trackName, loop);
         } catch (FoxPlayerException fpe) {
@@ -62,56 +242,286 @@ public class FoxPlayer implements iPlayer {
         }
     }
 
+    /**
+     * Проверяет наличие трека и ставит команду воспроизведения в очередь. Не блокирует вызывающий поток.
+     * @throws FoxPlayerException если трека нет ни в библиотеке, ни в банках звуков.
+     */
+    @Override
+    public void play(@NonNull String trackName, boolean isLooped) throws FoxPlayerException {
+        play(trackName, isLooped, 0, -1, fadeOutMs, fadeInMs, latencyProfile);
+    }
+
+    /**
+     * То же, что {@link #play(String, boolean)}, но с собственным профилем задержки,
+     * например {@link LatencyProfile#SFX} для щелчков интерфейса на фоне музыки в {@link LatencyProfile#STREAMING}.
+     * Профиль действует только при выводе через отдельные линии (без {@link SoftMixer}).
+     */
+    public void play(@NonNull String trackName, boolean isLooped, @NonNull LatencyProfile profile) throws FoxPlayerException {
+        play(trackName, isLooped, 0, -1, fadeOutMs, fadeInMs, profile);
+    }
+
+    /**
+     * Играет трек бесшовной петлей: линия не переоткрывается, после {@code loopEndFrame} звук продолжается с {@code loopStartFrame}.
+     * Часть трека до {@code loopStartFrame} звучит один раз (вступление).
+     * @param loopStartFrame кадр начала петли.
+     * @param loopEndFrame кадр конца петли (не включительно), значение <= 0 - конец трека.
+     */
     @Override
-    public synchronized void play(@NonNull String trackName, boolean isLooped) throws FoxPlayerException {
+    public void play(@NonNull String trackName, long loopStartFrame, long loopEndFrame) throws FoxPlayerException {
+        if (loopStartFrame < 0 || loopEndFrame > 0 && loopEndFrame <= loopStartFrame) {
+            throw new FoxPlayerException(String.format("FoxPlayer.play: Wrong loop points %d..%d for the track '%s'.",
+                    loopStartFrame, loopEndFrame, trackName));
+        }
+        play(trackName, true, loopStartFrame, loopEndFrame, fadeOutMs, fadeInMs, latencyProfile);
+    }
+
+    /**
+     * Плавно переходит на новый трек: текущие треки затухают, а новый нарастает за одно и то же время.
+     * @param durationMs длительность перехода.
+     */
+    public void crossfade(@NonNull String trackName, boolean isLooped, int durationMs) throws FoxPlayerException {
+        play(trackName, isLooped, 0, -1, durationMs, durationMs, latencyProfile);
+    }
+
+    private void play(String trackName, boolean isLooped, long loopStart, long loopEnd, int stopFadeMs, int startFadeMs,
+                      LatencyProfile profile) throws FoxPlayerException {
         lastTrack = trackName;
         if (isCurrentPlayerMute) {return;}
-        if (trackMap.containsKey(trackName)) {
-//            Print(getClass(), LEVEL.DEBUG, "FoxPlayer.play: The track '" + trackName + "' was found in the trackMap.");
-            if (!isParallelPlayable) {
-                stop();
+        long requestedAt = System.nanoTime();
+        if (hasTrack(trackName)) {
+//            Print(getClass(), LEVEL.DEBUG, "FoxPlayer.play: The track '" + trackName + "' was found in the library.");
+            if (!voiceAllocator.tryTrigger(trackName, requestedAt)) {
+                return; // слишком частый перезапуск отбрасывается без постановки команды в очередь
             }
-            threadList.add(new PlayThread(getName(), trackMap.get(trackName), vConv.volumePercentToGain(currentPlayerVolume), isLooped));
+            submit("play", () -> {
+                if (!isParallelPlayable) {
+                    stopNow(stopFadeMs);
+                }
+                if (!voiceAllocator.admit(trackName)) {
+                    return;
+                }
+                Callable<PcmSource> opener = sourceOpener(trackName, isLooped, loopStart, loopEnd);
+                SoftMixer softMixer = mixer;
+                if (softMixer != null) {
+                    MixerVoice voice = softMixer.play(trackName, opener, vConv.volumePercentToGain(currentPlayerVolume), startFadeMs,
+                            metrics, requestedAt, reaper);
+                    voiceAllocator.started(voice);
+                } else {
+                    PlayThread thread = new PlayThread(getName(), scheduler, trackName, opener, vConv.volumePercentToGain(currentPlayerVolume), startFadeMs,
+                            metrics, requestedAt, profile, grownProfiles, linePool, reaper);
+                    voiceAllocator.started(thread);
+                }
+            });
         } else {
             stop();
-            Print(getClass(), LEVEL.DEBUG, "FoxPlayer.play: The track '" + trackName + "' is absent in the trackMap.");
-            throw new FoxPlayerException(String.format("FoxPlayer.play: The track '%s' is absent in the trackMap.", trackName));
+            Print(getClass(), LEVEL.DEBUG, "FoxPlayer.play: The track '" + trackName + "' is absent in the library.");
+            throw new FoxPlayerException(String.format("FoxPlayer.play: The track '%s' is absent in the library.", trackName));
+        }
+
+    }
+
+    private void submit(String commandName, Runnable command) {
+        if (!commands.submit(command)) {
+            Print(getClass(), LEVEL.DEBUG, "FoxPlayer." + commandName + ": The command queue is full, the command was dropped.");
         }
+    }
+
+    /**
+     * Задает правила воспроизведения трека (см. {@link VoicePolicy}), null - правила по умолчанию.
+     */
+    public void setVoicePolicy(@NonNull String trackName, VoicePolicy policy) {
+        voiceAllocator.setPolicy(trackName, policy);
+    }
+
+    /**
+     * @param listener получает завершение и ошибки треков плеера (в потоке воспроизведения или микшера),
+     *                 null - ошибки только пишутся в лог.
+     */
+    public void setVoiceListener(VoiceListener listener) {
+        reaper.setListener(listener);
+    }
+
+    public VoiceListener getVoiceListener() {
+        return reaper.getListener();
+    }
+
+    /**
+     * @param maxVoices сколько треков плеера может звучать одновременно (0 - без ограничения),
+     *                  при нехватке голосов решает приоритет из {@link VoicePolicy}.
+     */
+    public void setMaxVoices(int maxVoices) {
+        voiceAllocator.setMaxVoices(maxVoices);
+    }
+
+    /**
+     * @return сколько команд было отброшено из-за переполнения очереди с момента создания плеера.
+     */
+    public long getDroppedCommands() {
+        return commands.getDroppedCount();
+    }
+
+    /**
+     * Источник открывается уже в потоке воспроизведения: из кэша, если трек был предзагружен, затем из банков звуков, иначе из файла.
+     */
+    private Callable<PcmSource> sourceOpener(String trackName, boolean isLooped, long loopStart, long loopEnd) {
+        AudioFormat target = mixer == null ? getOutputFormat() : null; // микшер приводит голоса к своему формату сам
+        return sourceOpener(trackName, isLooped, loopStart, loopEnd, target);
+    }
+
+    /**
+     * @param target формат, к которому приводится источник, или null - без преобразования.
+     */
+    Callable<PcmSource> sourceOpener(String trackName, boolean isLooped, long loopStart, long loopEnd, AudioFormat target) {
+        PcmTrack cached = pcmCache == null ? null : pcmCache.get(trackName);
+        if (cached == null) {
+            cached = fromBanks(trackName);
+        }
+        PcmTrack inMemory = cached;
+        File file = library.getFile(trackName);
+        return () -> {
+            PcmSource source = inMemory != null ? PcmSource.of(inMemory) : PcmSource.open(file);
+            return PcmSource.convert(isLooped ? PcmSource.loop(source, loopStart, loopEnd) : source, target);
+        };
+    }
+
+    /**
+     * Формат, в котором плеер открывает линии. При первом обращении выбирается через {@link FormatNegotiator},
+     * после чего все треки приводятся к нему встроенным ресэмплером.
+     * @return формат вывода или null, если подходящий формат не найден (треки играют в своем формате).
+     */
+    public synchronized AudioFormat getOutputFormat() {
+        if (!isFormatNegotiated) {
+            outputFormat = FormatNegotiator.negotiate();
+            isFormatNegotiated = true;
+        }
+        return outputFormat;
+    }
+
+    /**
+     * Задает формат вывода вручную вместо автоматического выбора.
+     * @param outputFormat 16 бит signed little-endian PCM или null - играть каждый трек в его собственном формате.
+     */
+    public synchronized void setOutputFormat(AudioFormat outputFormat) {
+        if (outputFormat != null && !PcmSource.isPcm16le(outputFormat)) {
+            throw new FoxPlayerException("FoxPlayer.setOutputFormat: Only 16 bit signed little-endian PCM is supported: " + outputFormat);
+        }
+        this.outputFormat = outputFormat;
+        isFormatNegotiated = true;
+    }
+
+    /**
+     * Включает кэш декодированных треков с указанным бюджетом (в байтах) или меняет бюджет уже включенного.
+     * @param budgetBytes максимальный суммарный объем PCM-данных в кэше. Значение <= 0 выключает кэш.
+     */
+    public synchronized void setCacheBudget(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            if (pcmCache != null) {
+                pcmCache.clear();
+                pcmCache = null;
+            }
+        } else if (pcmCache == null) {
+            pcmCache = new PcmCache(budgetBytes);
+        } else {
+            pcmCache.setBudget(budgetBytes);
+        }
+    }
+
+    /**
+     * Переключает плеер на программный микшер (один поток и одна линия на все голоса) или обратно на
+     * поток-на-звук, если передан {@code null}. Уже звучащие треки при этом останавливаются.
+     * Один микшер может быть общим для нескольких плееров.
+     */
+    public void setMixer(SoftMixer mixer) {
+        stop();
+        this.mixer = mixer;
+    }
 
+    @Override
+    public void preload(@NonNull String trackName) throws FoxPlayerException {
+        PcmCache cache = pcmCache;
+        if (cache == null) {
+            throw new FoxPlayerException("FoxPlayer.preload: The PCM cache is disabled. Call setCacheBudget(long) first.");
+        }
+        File source = library.getFile(trackName);
+        if (source == null && fromBanks(trackName) != null) {
+            return; // треки банка и так в памяти
+        }
+        if (source == null) {
+            throw new FoxPlayerException(String.format("FoxPlayer.preload: The track '%s' is absent in the library.", trackName));
+        }
+        SoftMixer softMixer = mixer;
+        cache.load(trackName, source, softMixer == null ? getOutputFormat() : softMixer.getFormat());
+    }
+
+    @Override
+    public void evict(@NonNull String trackName) {
+        PcmCache cache = pcmCache;
+        if (cache != null) {
+            cache.evict(trackName);
+        }
     }
 
     @Override
     public void mute(boolean mute) {
         isCurrentPlayerMute = mute;
-        if (threadList != null && threadList.size() > 0) {
-            for (PlayThread playThread : threadList) {
-                playThread.mute(isCurrentPlayerMute);
+        submit("mute", () -> {
+            voiceAllocator.reap();
+            for (int i = 0; i < voiceAllocator.size(); i++) {
+                voiceAllocator.get(i).mute(isCurrentPlayerMute);
             }
-        }
+        });
     }
 
     @Override
     public void setVolume(float volume) {
         currentPlayerVolume = volume;
-        for (PlayThread playThread : threadList) {
-            playThread.setVolume(vConv.volumePercentToGain(currentPlayerVolume));
-        }
+        submit("setVolume", () -> {
+            voiceAllocator.reap();
+            float gain = vConv.volumePercentToGain(currentPlayerVolume);
+            for (int i = 0; i < voiceAllocator.size(); i++) {
+                voiceAllocator.get(i).setVolume(gain, volumeRampMs);
+            }
+        });
     }
 
     @Override
     public void stop() {
-        if (threadList != null && threadList.size() > 0) {
-            for (PlayThread thread : threadList) {
-                if (thread == null) {
-                    continue;
-                }
-                thread.close();
-                if (thread.getException() != null) {
-                    thread.getException().printStackTrace();
-                }
-            }
-            threadList.clear();
+        stop(fadeOutMs);
+    }
+
+    /**
+     * Останавливает все треки плеера, плавно заглушая их за {@code fadeOutMs}. Не блокирует вызывающий поток.
+     */
+    public void stop(int fadeOutMs) {
+        submit("stop", () -> stopNow(fadeOutMs));
+    }
+
+    private void stopNow(int fadeOutMs) {
+        for (int i = 0; i < voiceAllocator.size(); i++) {
+            voiceAllocator.get(i).stop(fadeOutMs);
+        }
+        voiceAllocator.clear();
+    }
+
+    /**
+     * Немедленно останавливает все треки плеера и его потоки. После вызова плеер больше не играет.
+     * Общий {@link SoftMixer}, если он назначен, не закрывается.
+     * @param timeoutMs сколько ждать завершения потоков перед их прерыванием.
+     * @return true, если все потоки завершились вовремя.
+     */
+    public synchronized boolean shutdown(long timeoutMs) {
+        commands.close(timeoutMs);
+        // поток управления остановлен, набор голосов больше никто не трогает:
+        for (int i = 0; i < voiceAllocator.size(); i++) {
+            voiceAllocator.get(i).stop(0);
         }
+        voiceAllocator.clear();
+        linePool.close();
+        return scheduler.shutdown(timeoutMs);
+    }
+
+    public boolean shutdown() {
+        return shutdown(1000);
     }
 
     public void setLooped(boolean b) {
@@ -0,0 +1,157 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Линейное изменение усиления с точностью до кадра, применяемое прямо к PCM-буферу.
+ * {@link #rampTo(float, int)} можно вызывать из любого потока, остальные методы - только из потока вывода.
+ */
+public class GainRamp {
+    public static final int DEFAULT_FADE_IN_MS = 500;
+    public static final int DEFAULT_FADE_OUT_MS = 250;
+    public static final int DEFAULT_VOLUME_RAMP_MS = 50;
+
+    private volatile Target request;
+
+    // состояние потока вывода:
+    private float frameRate = 44100f;
+    private Target applied;
+    private float gain;
+    private float step;
+    private int framesLeft;
+    private float[] scratch = new float[0];
+
+    /**
+     * @param initialGain начальное линейное усиление (0 - тишина, 1 - без изменений).
+     */
+    public GainRamp(float initialGain) {
+        this.gain = initialGain;
+        this.applied = new Target(initialGain, 0);
+        this.request = applied;
+    }
+
+    /**
+     * Плавно переводит усиление к {@code target} за {@code durationMs} миллисекунд от текущего значения.
+     */
+    public void rampTo(float target, int durationMs) {
+        request = new Target(Math.max(0f, target), Math.max(0, durationMs));
+    }
+
+    public float getTarget() {
+        return request.gain;
+    }
+
+    /**
+     * @return true, если усиление достигло нуля и больше не меняется.
+     */
+    public boolean isSilent() {
+        return request == applied && framesLeft == 0 && gain == 0f;
+    }
+
+    /**
+     * @return через сколько кадров усиление станет нулевым (0 - уже тишина) или -1, если громкость не гасится.
+     */
+    int framesToSilence() {
+        Target r = request;
+        if (r.gain != 0f) {
+            return -1;
+        }
+        return r != applied ? Math.round(frameRate * r.durationMs / 1000f) : framesLeft;
+    }
+
+    /**
+     * @param frameRate частота кадров потока, к которому применяется усиление (влияет на длительность переходов).
+     */
+    public void setFrameRate(float frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * @return усиление для очередного кадра.
+     */
+    public float next() {
+        Target r = request;
+        if (r != applied) {
+            applied = r;
+            framesLeft = Math.round(frameRate * r.durationMs / 1000f);
+            if (framesLeft == 0) {
+                gain = r.gain;
+            } else {
+                step = (r.gain - gain) / framesLeft;
+            }
+        }
+        if (framesLeft > 0) {
+            framesLeft--;
+            gain = framesLeft == 0 ? applied.gain : gain + step;
+        }
+        return gain;
+    }
+
+    /**
+     * Применяет усиление к float-сэмплам (см. {@link PcmKernels}): участки перехода - линейной рампой, остальное - постоянным множителем.
+     * @param buf данные (изменяются на месте).
+     * @param frames количество кадров.
+     * @param channels число каналов (чередуются).
+     */
+    public void apply(float[] buf, int offset, int frames, int channels) {
+        if (frames <= 0) {
+            return;
+        }
+        Target r = request;
+        if (r != applied) {
+            next(); // принимает новую цель и считает усиление первого кадра
+            PcmKernels.gain(buf, offset, channels, gain);
+            offset += channels;
+            frames--;
+        }
+        while (frames > 0) {
+            if (framesLeft > 0) {
+                int n = Math.min(frames, framesLeft);
+                framesLeft -= n;
+                gain = PcmKernels.gainRamp(buf, offset, n, channels, gain, step);
+                if (framesLeft == 0) {
+                    gain = applied.gain;
+                }
+                offset += n * channels;
+                frames -= n;
+            } else {
+                if (gain != 1f) {
+                    PcmKernels.gain(buf, offset, frames * channels, gain);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Применяет усиление к 16-битному signed little-endian PCM с насыщением.
+     * @param buffer данные (изменяются на месте).
+     * @param length длина данных в байтах.
+     * @param format формат данных.
+     */
+    public void apply(byte[] buffer, int length, AudioFormat format) {
+        setFrameRate(format.getFrameRate());
+        if (request == applied && framesLeft == 0 && gain == 1f) {
+            return;
+        }
+        int channels = format.getChannels();
+        int frames = length / (channels * 2);
+        int samples = frames * channels;
+        if (scratch.length < samples) {
+            scratch = new float[samples];
+        }
+        PcmKernels.toFloat(buffer, 0, scratch, 0, samples);
+        apply(scratch, 0, frames, channels);
+        PcmKernels.toPcm16(scratch, 0, buffer, 0, samples);
+    }
+
+    private static final class Target {
+        private final float gain;
+        private final int durationMs;
+
+        Target(float gain, int durationMs) {
+            this.gain = gain;
+            this.durationMs = durationMs;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Профиль задержки: размер буфера линии и размер блока, которым PCM пишется в линию.
+ * Малый буфер - быстрый отклик для звуков интерфейса и эффектов, большой - устойчивое потоковое воспроизведение музыки.
+ * Профиль неизменяем: после серии опустошений буфера плеер заменяет адаптивный профиль его копией
+ * с удвоенным буфером (см. {@link #grown()}) и помнит её только для себя.
+ * Профиль с упреждением декодирует трек наперед в отдельном потоке, и запись в линию не ждет диск и декодер.
+ */
+public class LatencyProfile {
+    /**
+     * Эффекты и интерфейс: буфер 40 мс, блок 10 мс, рост до 160 мс.
+     */
+    public static final LatencyProfile SFX = new LatencyProfile("sfx", 40, 10, true, 160, 3);
+    /**
+     * Прежнее поведение плеера: буфер линии по умолчанию, блок около 8 КБ.
+     */
+    public static final LatencyProfile DEFAULT = new LatencyProfile("default", 0, 50, false, 0, 0);
+    /**
+     * Фоновая музыка и длинные треки: буфер 500 мс, блок 100 мс, рост до 2 с, упреждение декодирования 2 с.
+     */
+    public static final LatencyProfile STREAMING = new LatencyProfile("streaming", 500, 100, true, 2000, 2, 2000);
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int chunkMs;
+    @Getter
+    private final boolean isAdaptive;
+    @Getter
+    private final int maxBufferMs;
+    @Getter
+    private final int underrunsToGrow;
+    @Getter
+    private final int readAheadMs;
+    /**
+     * Размер буфера линии в мс, 0 - размер по умолчанию для устройства.
+     */
+    @Getter
+    private final int bufferMs;
+
+    public LatencyProfile(@NonNull String name, int bufferMs, int chunkMs) {
+        this(name, bufferMs, chunkMs, false, bufferMs, 0);
+    }
+
+    /**
+     * @param bufferMs размер буфера линии в мс (0 - размер по умолчанию для устройства).
+     * @param chunkMs размер блока записи в линию в мс.
+     * @param isAdaptive увеличивать ли буфер при повторяющихся опустошениях.
+     * @param maxBufferMs предел роста буфера.
+     * @param underrunsToGrow после скольких опустошений за время звучания трека буфер удваивается.
+     */
+    public LatencyProfile(@NonNull String name, int bufferMs, int chunkMs, boolean isAdaptive, int maxBufferMs, int underrunsToGrow) {
+        this(name, bufferMs, chunkMs, isAdaptive, maxBufferMs, underrunsToGrow, 0);
+    }
+
+    /**
+     * @param readAheadMs упреждение декодирования в мс (0 - декодировать в потоке записи, без упреждения).
+     */
+    public LatencyProfile(@NonNull String name, int bufferMs, int chunkMs, boolean isAdaptive, int maxBufferMs, int underrunsToGrow,
+                          int readAheadMs) {
+        if (bufferMs < 0 || chunkMs <= 0 || bufferMs > 0 && chunkMs > bufferMs) {
+            throw new FoxPlayerException(String.format("LatencyProfile: Wrong buffer (%d ms) or chunk (%d ms) size for the profile '%s'.",
+                    bufferMs, chunkMs, name));
+        }
+        if (isAdaptive && (bufferMs == 0 || maxBufferMs < bufferMs || underrunsToGrow < 1)) {
+            throw new FoxPlayerException(String.format("LatencyProfile: Wrong adaptive settings (max %d ms, after %d underruns) for the profile '%s'.",
+                    maxBufferMs, underrunsToGrow, name));
+        }
+        if (readAheadMs < 0) {
+            throw new FoxPlayerException(String.format("LatencyProfile: Wrong read-ahead (%d ms) for the profile '%s'.", readAheadMs, name));
+        }
+        this.name = name;
+        this.bufferMs = bufferMs;
+        this.chunkMs = chunkMs;
+        this.isAdaptive = isAdaptive;
+        this.maxBufferMs = maxBufferMs;
+        this.underrunsToGrow = underrunsToGrow;
+        this.readAheadMs = readAheadMs;
+    }
+
+    /**
+     * @return размер буфера линии в байтах, кратный кадру, или -1, если используется размер по умолчанию.
+     */
+    public int getBufferBytes(@NonNull AudioFormat format) {
+        return bufferMs == 0 ? -1 : toBytes(bufferMs, format);
+    }
+
+    /**
+     * @return размер блока записи в байтах, кратный кадру.
+     */
+    public int getChunkBytes(@NonNull AudioFormat format) {
+        return toBytes(chunkMs, format);
+    }
+
+    /**
+     * @return копия адаптивного профиля с удвоенным буфером (не больше {@link #getMaxBufferMs()})
+     * или этот же профиль, если расти некуда.
+     */
+    LatencyProfile grown() {
+        int next = Math.min(maxBufferMs, bufferMs * 2);
+        if (!isAdaptive || next <= bufferMs) {
+            return this;
+        }
+        return new LatencyProfile(name, next, chunkMs, isAdaptive, maxBufferMs, underrunsToGrow, readAheadMs);
+    }
+
+    static int toBytes(int ms, AudioFormat format) {
+        int frameSize = Math.max(1, format.getFrameSize());
+        long frames = Math.max(1, (long) (format.getFrameRate() * ms / 1000f));
+        return (int) Math.min(Integer.MAX_VALUE / frameSize, frames) * frameSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyProfile '%s' (buffer %d ms, chunk %d ms%s%s)", name, bufferMs, chunkMs,
+                isAdaptive ? ", adaptive" : "", readAheadMs > 0 ? ", read-ahead " + readAheadMs + " ms" : "");
+    }
+}
@@ -0,0 +1,293 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static fox.Out.Print;
+
+/**
+ * Пул открытых линий вывода по формату и размеру буфера. Открытие и закрытие линии - одни из самых медленных вызовов
+ * при старте трека, поэтому отыгравшая линия останавливается, очищается и ждет следующего трека того же формата.
+ * Линии, простоявшие дольше {@link #getIdleTimeoutMs()}, закрываются в фоне планировщиком плеера.
+ */
+public class LinePool {
+    public static final int DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+    public static final int DEFAULT_MAX_IDLE_PER_FORMAT = 4;
+
+    private final PlayerScheduler scheduler;
+    private final Map<Key, ArrayDeque<Idle>> idle = new HashMap<>();
+    private final Map<SourceDataLine, Key> leased = new IdentityHashMap<>();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private ScheduledFuture<?> sweep;
+    private boolean isClosed = false;
+
+    @Getter
+    private volatile int idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    @Getter
+    private volatile int maxIdlePerFormat = DEFAULT_MAX_IDLE_PER_FORMAT;
+
+    public LinePool(@NonNull PlayerScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Выдает открытую (но не запущенную) линию: свободную из пула или новую.
+     * @param bufferBytes размер буфера линии или -1 - размер по умолчанию для устройства.
+     */
+    public SourceDataLine lease(@NonNull AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        Key key = new Key(format, bufferBytes);
+        synchronized (this) {
+            if (isClosed) {
+                throw new FoxPlayerException("LinePool: The pool is closed.");
+            }
+            ArrayDeque<Idle> lines = idle.get(key);
+            Idle candidate;
+            while (lines != null && (candidate = lines.pollLast()) != null) {
+                if (candidate.line.isOpen()) {
+                    leased.put(candidate.line, key);
+                    reused.increment();
+                    return candidate.line;
+                }
+            }
+        }
+
+        // открытие линии долгое, поэтому вне блокировки:
+        SourceDataLine line = open(format, bufferBytes);
+        synchronized (this) {
+            leased.put(line, key);
+        }
+        opened.increment();
+        return line;
+    }
+
+    /**
+     * Возвращает исправную линию в пул. Линия останавливается, а недоигранные данные сбрасываются.
+     */
+    public void release(@NonNull SourceDataLine line) {
+        line.stop();
+        line.flush();
+        synchronized (this) {
+            Key key = leased.remove(line);
+            if (key != null && !isClosed && line.isOpen()) {
+                ArrayDeque<Idle> lines = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+                if (lines.size() < maxIdlePerFormat) {
+                    lines.addLast(new Idle(line, System.nanoTime()));
+                    if (sweep == null) {
+                        scheduleSweep(idleTimeoutMs);
+                    }
+                    return;
+                }
+            }
+        }
+        line.close();
+    }
+
+    /**
+     * Закрывает линию, не возвращая её в пул (например, после ошибки записи).
+     */
+    public void discard(@NonNull SourceDataLine line) {
+        synchronized (this) {
+            leased.remove(line);
+        }
+        line.stop();
+        line.close();
+    }
+
+    /**
+     * Заранее открывает линии, чтобы первый трек не ждал устройство. Каждая линия один раз пропускает через себя
+     * несколько миллисекунд тишины, чтобы проснулись драйвер и поток устройства.
+     * @return сколько линий открыто.
+     */
+    public int warmUp(@NonNull AudioFormat format, int bufferBytes, int count) throws LineUnavailableException {
+        List<SourceDataLine> lines = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                SourceDataLine line = lease(format, bufferBytes);
+                lines.add(line);
+                byte[] silence = new byte[Math.min(line.getBufferSize() / 2, LatencyProfile.toBytes(5, format))];
+                line.start();
+                line.write(silence, 0, silence.length);
+            }
+        } finally {
+            for (SourceDataLine line : lines) {
+                release(line);
+            }
+        }
+        return lines.size();
+    }
+
+    public void setIdleTimeoutMs(int idleTimeoutMs) {
+        if (idleTimeoutMs < 0) {
+            throw new FoxPlayerException("LinePool: The idle timeout must not be negative, but was " + idleTimeoutMs);
+        }
+        this.idleTimeoutMs = idleTimeoutMs;
+        synchronized (this) {
+            if (sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+                scheduleSweep(idleTimeoutMs);
+            }
+        }
+    }
+
+    public void setMaxIdlePerFormat(int maxIdlePerFormat) {
+        if (maxIdlePerFormat < 0) {
+            throw new FoxPlayerException("LinePool: The idle lines limit must not be negative, but was " + maxIdlePerFormat);
+        }
+        this.maxIdlePerFormat = maxIdlePerFormat;
+    }
+
+    /**
+     * @return сколько линий было открыто пулом.
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * @return сколько раз линия была выдана повторно, без открытия устройства.
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    public synchronized int getIdleCount() {
+        int count = 0;
+        for (ArrayDeque<Idle> lines : idle.values()) {
+            count += lines.size();
+        }
+        return count;
+    }
+
+    /**
+     * Закрывает свободные линии. Выданные линии закрываются при возврате.
+     */
+    public void close() {
+        List<Idle> toClose = new ArrayList<>();
+        synchronized (this) {
+            isClosed = true;
+            for (ArrayDeque<Idle> lines : idle.values()) {
+                toClose.addAll(lines);
+            }
+            idle.clear();
+            if (sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+            }
+        }
+        for (Idle i : toClose) {
+            i.line.close();
+        }
+    }
+
+    private static SourceDataLine open(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        SourceDataLine line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+        if (bufferBytes > 0) {
+            line.open(format, bufferBytes);
+        } else {
+            line.open(format);
+        }
+        return line;
+    }
+
+    private void scheduleSweep(long delayMs) {
+        try {
+            sweep = scheduler.schedule(this::sweep, delayMs);
+        } catch (FoxPlayerException fpe) {
+            // планировщик уже остановлен - линии закроются в close()
+        }
+    }
+
+    private void sweep() {
+        List<Idle> toClose = new ArrayList<>();
+        synchronized (this) {
+            sweep = null;
+            long now = System.nanoTime();
+            long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+            long nextExpiry = Long.MAX_VALUE;
+            for (ArrayDeque<Idle> lines : idle.values()) {
+                // в начале очереди - самые давно вернувшиеся линии:
+                while (!lines.isEmpty() && now - lines.peekFirst().since >= timeout) {
+                    toClose.add(lines.pollFirst());
+                }
+                if (!lines.isEmpty()) {
+                    nextExpiry = Math.min(nextExpiry, lines.peekFirst().since + timeout - now);
+                }
+            }
+            idle.values().removeIf(ArrayDeque::isEmpty);
+            if (!isClosed && !idle.isEmpty()) {
+                scheduleSweep(TimeUnit.NANOSECONDS.toMillis(nextExpiry) + 1);
+            }
+        }
+        for (Idle i : toClose) {
+            i.line.close();
+        }
+        if (!toClose.isEmpty()) {
+            Print(getClass(), LEVEL.DEBUG, "LinePool: " + toClose.size() + " idle line(s) was closed.");
+        }
+    }
+
+    private static final class Idle {
+        private final SourceDataLine line;
+        private final long since;
+
+        Idle(SourceDataLine line, long since) {
+            this.line = line;
+            this.since = since;
+        }
+    }
+
+    /**
+     * {@link AudioFormat} не переопределяет equals, поэтому ключ собирается из его полей.
+     */
+    private static final class Key {
+        private final AudioFormat.Encoding encoding;
+        private final float sampleRate;
+        private final int sampleSizeInBits;
+        private final int channels;
+        private final boolean isBigEndian;
+        private final int bufferBytes;
+
+        Key(AudioFormat format, int bufferBytes) {
+            this.encoding = format.getEncoding();
+            this.sampleRate = format.getSampleRate();
+            this.sampleSizeInBits = format.getSampleSizeInBits();
+            this.channels = format.getChannels();
+            this.isBigEndian = format.isBigEndian();
+            this.bufferBytes = bufferBytes > 0 ? bufferBytes : -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return encoding.equals(k.encoding) && sampleRate == k.sampleRate && sampleSizeInBits == k.sampleSizeInBits
+                    && channels == k.channels && isBigEndian == k.isBigEndian && bufferBytes == k.bufferBytes;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(encoding, sampleRate, sampleSizeInBits, channels, isBigEndian, bufferBytes);
+        }
+    }
+}
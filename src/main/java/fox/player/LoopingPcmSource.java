@@ -0,0 +1,150 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Бесшовная петля поверх любого {@link PcmSource}: на конце петли чтение продолжается с её начала
+ * внутри того же вызова {@link #read}, так что линия вывода не закрывается и не голодает.
+ * <p>
+ * Источник не из памяти (файл) читается с диска только один раз: тело петли копируется в память на первом проходе,
+ * дальше петля звучит из этой копии без перемотки, переоткрытия файла и декодирования. Петля длиннее
+ * {@link #MAX_LOOP_BYTES} в память не копируется, такой источник перематывается на начало петли на каждом круге.
+ */
+class LoopingPcmSource implements PcmSource {
+    /**
+     * Наибольший размер копии тела петли в памяти (около 3 минут стерео 44.1 кГц).
+     */
+    static final int MAX_LOOP_BYTES = 32 * 1024 * 1024;
+
+    private final PcmSource source;
+    private final long loopStart;
+    private final long loopEnd;
+    private final int frameSize;
+    private boolean isCaching;
+    private long frame = 0;
+
+    private byte[] loopData;
+    private int loopBytes = 0;
+    private boolean isCapturing = false; // тело петли копируется с самого loopStart
+    private boolean isCaptured = false;
+
+    LoopingPcmSource(PcmSource source, long loopStart, long loopEnd) {
+        if (loopStart < 0 || loopEnd > 0 && loopEnd <= loopStart) {
+            throw new FoxPlayerException(String.format("LoopingPcmSource: Wrong loop points %d..%d.", loopStart, loopEnd));
+        }
+        this.source = source;
+        this.loopStart = loopStart;
+        this.loopEnd = loopEnd > 0 ? loopEnd : Long.MAX_VALUE;
+        this.frameSize = source.getFormat().getFrameSize();
+        this.isCaching = !source.isInMemory(); // источник из памяти и так перематывается даром
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return source.getFormat();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            if (isCaptured && frame >= loopStart) {
+                return total + readCaptured(buffer, offset + total, length - total);
+            }
+            if (frame == loopStart && isCaching && !isCapturing) {
+                isCapturing = true;
+                loopBytes = 0;
+            }
+            // вступление читается отдельно от петли, чтобы в копию попало только тело петли:
+            long framesToEnd = (frame < loopStart ? loopStart : loopEnd) - frame;
+            int want = framesToEnd >= (length - total) / frameSize ? length - total : (int) Math.max(0, framesToEnd) * frameSize;
+            int n = want == 0 ? -1 : source.read(buffer, offset + total, want);
+            if (n == -1) {
+                if (frame <= loopStart) {
+                    return total > 0 ? total : -1; // трек кончился до петли или петля пустая
+                }
+                frame = loopStart;
+                if (isCapturing) {
+                    isCapturing = false;
+                    isCaptured = true;
+                    if (total > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                source.seek(loopStart);
+                if (total > 0) {
+                    break;
+                }
+                continue;
+            }
+            capture(buffer, offset + total, n);
+            total += n;
+            frame += n / frameSize;
+            if (n < want) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Копирует прочитанное тело петли в память. Если петля не помещается в {@link #MAX_LOOP_BYTES},
+     * копия отбрасывается и источник дальше перематывается на каждом круге.
+     */
+    private void capture(byte[] buffer, int offset, int length) {
+        if (!isCapturing || frame < loopStart) {
+            return;
+        }
+        if ((long) loopBytes + length > MAX_LOOP_BYTES) {
+            isCapturing = false;
+            isCaching = false;
+            loopData = null;
+            loopBytes = 0;
+            return;
+        }
+        if (loopData == null || loopData.length < loopBytes + length) {
+            long frames = source.getFrameLength();
+            long expected = frames > 0 ? (Math.min(frames, loopEnd) - loopStart) * frameSize : 0;
+            long capacity = expected >= loopBytes + length ? expected : Math.max(2L * (loopBytes + length), 64 * 1024);
+            loopData = Arrays.copyOf(loopData == null ? new byte[0] : loopData, (int) Math.min(capacity, MAX_LOOP_BYTES));
+        }
+        System.arraycopy(buffer, offset, loopData, loopBytes, length);
+        loopBytes += length;
+    }
+
+    private int readCaptured(byte[] buffer, int offset, int length) {
+        int position = (int) ((frame - loopStart) * frameSize);
+        int n = Math.min(length, loopBytes - position);
+        System.arraycopy(loopData, position, buffer, offset, n);
+        frame = position + n == loopBytes ? loopStart : frame + n / frameSize;
+        return n;
+    }
+
+    @Override
+    public void seek(long frame) throws IOException {
+        if (isCaptured && frame >= loopStart && frame < loopStart + loopBytes / frameSize) {
+            this.frame = frame;
+            return;
+        }
+        source.seek(frame);
+        this.frame = frame;
+        if (!isCaptured) {
+            isCapturing = false; // копия петли начнется заново с loopStart
+            loopBytes = 0;
+        }
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return source.isInMemory();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+        loopData = null;
+    }
+}
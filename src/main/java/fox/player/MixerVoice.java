@@ -0,0 +1,236 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import static fox.player.FoxPlayer.getVolumeConverter;
+
+/**
+ * Один голос программного микшера {@link SoftMixer}.
+ * Управляющие методы вызываются из любого потока, чтение и сведение - только из потока микшера.
+ * Источник открывается заранее в пуле микшера ({@link #prepare(AudioFormat, PlayerScheduler)}), а файлы декодируются
+ * с упреждением, поэтому поток микшера только копирует готовый PCM и не ждет диск и декодер.
+ */
+public class MixerVoice implements PlayerVoice {
+    static final int READ_AHEAD_MS = 500;
+    private static final long PRIME_TIMEOUT_MS = 200;
+
+    @Getter
+    private final String trackName;
+    private final Callable<PcmSource> sourceOpener;
+
+    private final GainRamp gainRamp;
+    private final PlayerMetrics metrics;
+    private final long requestedAt;
+    private final VoiceListener listener;
+    private boolean isReported = false;
+    private volatile float volume;
+    private volatile boolean isMuted = false;
+    private volatile boolean isStopRequested = false;
+    private volatile boolean isFinished = false;
+    private volatile Exception ex;
+
+    // состояние ниже готовит prepare() до передачи голоса микшеру, дальше оно принадлежит потоку микшера:
+    private PcmSource source;
+    private ReadAheadPcmSource readAhead;
+    private AudioFormat sourceFormat;
+    private boolean isDrained = false;
+    private byte[] readBuf = new byte[0];
+    private float[] mixBuf = new float[0];
+    private boolean isOpened = false;
+    private boolean isStarted = false;
+
+    MixerVoice(@NonNull String trackName, @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs,
+               @NonNull PlayerMetrics metrics, long requestedAt) {
+        this(trackName, sourceOpener, volume, fadeInMs, metrics, requestedAt, null);
+    }
+
+    /**
+     * @param listener получает завершение голоса или его ошибку (в потоке микшера), может быть null.
+     */
+    MixerVoice(@NonNull String trackName, @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs,
+               @NonNull PlayerMetrics metrics, long requestedAt, VoiceListener listener) {
+        this.listener = listener;
+        this.trackName = trackName;
+        this.sourceOpener = sourceOpener;
+        this.volume = volume;
+        this.metrics = metrics;
+        this.requestedAt = requestedAt;
+
+        gainRamp = new GainRamp(0f);
+        gainRamp.rampTo(getVolumeConverter().gainToLinear(volume), fadeInMs);
+    }
+
+    /**
+     * @param volume новая громкость (gain в dB).
+     * @param rampMs длительность перехода к новой громкости.
+     */
+    @Override
+    public void setVolume(float volume, int rampMs) {
+        this.volume = volume;
+        applyVolume(rampMs);
+    }
+
+    @Override
+    public void mute(boolean isMuted) {
+        this.isMuted = isMuted;
+        applyVolume(GainRamp.DEFAULT_VOLUME_RAMP_MS);
+    }
+
+    private void applyVolume(int rampMs) {
+        if (!isStopRequested) {
+            gainRamp.rampTo(isMuted ? 0f : getVolumeConverter().gainToLinear(volume), rampMs);
+        }
+    }
+
+    /**
+     * Плавно глушит голос за {@code fadeOutMs} и освобождает его слот.
+     */
+    @Override
+    public void stop(int fadeOutMs) {
+        isStopRequested = true;
+        gainRamp.rampTo(0f, fadeOutMs);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    public Throwable getException() {
+        return ex;
+    }
+
+    void fail(Exception e) {
+        ex = e;
+        metrics.error(trackName, e);
+        finish();
+    }
+
+    void finish() {
+        if (isOpened) {
+            isOpened = false;
+            metrics.voiceClosed();
+        }
+        isFinished = true;
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            source = null;
+        }
+        if (listener != null && !isReported) {
+            isReported = true;
+            if (ex != null) {
+                listener.onError(trackName, ex);
+            } else {
+                listener.onFinished(trackName);
+            }
+        }
+    }
+
+    /**
+     * Добавляет очередной блок голоса в аккумулятор микшера.
+     * @param acc аккумулятор (float-сэмплы в диапазоне -1..1, чередование каналов).
+     * @param frames количество кадров в блоке.
+     * @param outFormat формат выхода микшера.
+     * @return сколько кадров голоса добавлено (меньше {@code frames} в конце трека или если декодер отстал).
+     */
+    int mixInto(float[] acc, int frames, AudioFormat outFormat) {
+        if (isFinished) {
+            return 0;
+        }
+        try {
+            long decodeStart = System.nanoTime();
+            boolean isFirst = !isStarted;
+            if (sourceFormat == null) {
+                open(outFormat); // голос не был подготовлен заранее (офлайн-рендер)
+            }
+            isStarted = true;
+
+            int channels = outFormat.getChannels();
+            int frameSize = sourceFormat.getFrameSize();
+            int bytesNeeded = frames * frameSize;
+            if (readBuf.length < bytesNeeded) {
+                readBuf = new byte[bytesNeeded];
+            }
+            int bytesRead = fill(readBuf, bytesNeeded);
+            int framesRead = bytesRead / frameSize;
+            metrics.decoded(System.nanoTime() - decodeStart);
+            metrics.streamed(bytesRead);
+            if (isFirst) {
+                metrics.playStarted(trackName, requestedAt);
+            }
+            if (framesRead < frames && !isDrained) {
+                // декодер не успел: голос звучит тишиной до конца блока, остальные голоса не ждут
+                metrics.underrun(trackName);
+            }
+
+            int samples = framesRead * channels;
+            if (mixBuf.length < samples) {
+                mixBuf = new float[frames * channels];
+            }
+            int audible = isStopRequested ? gainRamp.framesToSilence() : -1;
+            PcmKernels.toFloat(readBuf, 0, mixBuf, 0, samples);
+            gainRamp.apply(mixBuf, 0, framesRead, channels);
+            PcmKernels.mix(acc, 0, mixBuf, 0, samples);
+
+            boolean isFadedOut = isStopRequested && gainRamp.isSilent();
+            if (isFadedOut || isDrained) {
+                finish();
+            }
+            // после затухания остаток блока - тишина:
+            return isFadedOut && audible >= 0 ? Math.min(framesRead, audible) : framesRead;
+        } catch (Exception e) {
+            fail(e);
+            return 0;
+        }
+    }
+
+    /**
+     * Открывает источник вне потока микшера, для файлов запускает декодирование с упреждением и ждет первые данные.
+     * @param loader пул, в котором идет декодирование с упреждением.
+     */
+    void prepare(@NonNull AudioFormat outFormat, @NonNull PlayerScheduler loader) throws Exception {
+        open(outFormat);
+        if (!source.isInMemory()) {
+            readAhead = new ReadAheadPcmSource(source, LatencyProfile.toBytes(READ_AHEAD_MS, sourceFormat), loader, metrics, trackName);
+            source = readAhead;
+            readAhead.awaitData(PRIME_TIMEOUT_MS);
+        }
+    }
+
+    private void open(AudioFormat outFormat) throws Exception {
+        source = PcmSource.convert(sourceOpener.call(), outFormat);
+        sourceFormat = source.getFormat();
+        isOpened = true;
+        metrics.voiceOpened();
+        gainRamp.setFrameRate(sourceFormat.getFrameRate());
+    }
+
+    /**
+     * Читает до {@code length} байт PCM. Из упреждения берется только уже готовое, без ожидания декодера.
+     * @return количество прочитанных байт (меньше {@code length} в конце трека или если декодер отстал).
+     */
+    private int fill(byte[] buf, int length) throws Exception {
+        int total = 0;
+        while (total < length) {
+            int n = readAhead != null ? readAhead.poll(buf, total, length - total) : source.read(buf, total, length - total);
+            if (n == -1) {
+                isDrained = true;
+                break;
+            }
+            if (n == 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+}
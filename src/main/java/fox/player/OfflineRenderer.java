@@ -0,0 +1,238 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Офлайн-рендер: те же декодирование, громкость, нарастание/затухание и петли, что и при живом воспроизведении,
+ * но результат сводится в {@link PcmSink} (WAV-файл, буфер) так быстро, как позволяет процессор, и без звуковой карты.
+ * Сценарий задается заранее: какой трек в какой момент стартует и когда затихает. Объект одноразовый и не потокобезопасный.
+ */
+public class OfflineRenderer {
+    public static final int DEFAULT_BLOCK_FRAMES = 4096;
+
+    private final FoxPlayer player;
+    @Getter
+    private final AudioFormat format;
+    @Getter
+    private final PlayerMetrics metrics;
+    private final List<Cue> cues = new ArrayList<>();
+    private final List<Stop> stops = new ArrayList<>();
+    private boolean isRendered = false;
+
+    OfflineRenderer(@NonNull FoxPlayer player, @NonNull AudioFormat format) {
+        if (!PcmSource.isPcm16le(format) || format.getChannels() < 1 || format.getChannels() > 2) {
+            throw new FoxPlayerException("OfflineRenderer: Only 16 bit signed little-endian mono or stereo PCM is supported: " + format);
+        }
+        this.player = player;
+        this.format = format;
+        this.metrics = new PlayerMetrics(player.getName() + "-offline");
+    }
+
+    /**
+     * Запускает трек в момент {@code atMs} без петли с текущей громкостью плеера и без нарастания.
+     */
+    public OfflineRenderer play(@NonNull String trackName, long atMs) {
+        return play(trackName, atMs, false, player.getCurrentGain(), 0);
+    }
+
+    /**
+     * @param atMs момент старта от начала рендера.
+     * @param isLooped зациклить трек (тогда его нужно остановить через {@link #stop(String, long, int)} или ограничить длительность рендера).
+     * @param volume громкость (gain в dB).
+     * @param fadeInMs длительность нарастания громкости.
+     */
+    public OfflineRenderer play(@NonNull String trackName, long atMs, boolean isLooped, float volume, int fadeInMs) {
+        if (atMs < 0) {
+            throw new FoxPlayerException("OfflineRenderer.play: Wrong start time " + atMs + " ms for the track '" + trackName + "'.");
+        }
+        if (!player.hasTrack(trackName)) {
+            throw new FoxPlayerException(String.format("OfflineRenderer.play: The track '%s' is absent in the library.", trackName));
+        }
+        cues.add(new Cue(trackName, toFrames(atMs), isLooped, volume, fadeInMs));
+        return this;
+    }
+
+    /**
+     * Плавно глушит все экземпляры трека, звучащие в момент {@code atMs}.
+     */
+    public OfflineRenderer stop(@NonNull String trackName, long atMs, int fadeOutMs) {
+        stops.add(new Stop(trackName, toFrames(Math.max(0, atMs)), fadeOutMs));
+        return this;
+    }
+
+    /**
+     * Рендерит сценарий в WAV-файл.
+     * @param durationMs длительность результата; значение <= 0 - до окончания последнего трека.
+     * @return количество записанных кадров.
+     */
+    public long renderToWav(@NonNull Path file, long durationMs) throws IOException {
+        try (PcmSink sink = PcmSink.wav(file, format)) {
+            return render(sink, durationMs);
+        }
+    }
+
+    /**
+     * Рендерит сценарий в буфер, пока в нем есть место или пока не закончится последний трек.
+     * Зацикленный трек без остановки звучит до заполнения буфера.
+     * @return количество записанных кадров.
+     */
+    public long render(@NonNull ByteBuffer buffer) throws IOException {
+        long frames = buffer.remaining() / format.getFrameSize();
+        if (frames == 0) {
+            return 0;
+        }
+        return render(PcmSink.of(buffer), frames, false);
+    }
+
+    /**
+     * @param durationMs длительность результата; значение <= 0 - до окончания последнего трека.
+     * @return количество записанных кадров.
+     */
+    public long render(@NonNull PcmSink sink, long durationMs) throws IOException {
+        return render(sink, durationMs > 0 ? toFrames(durationMs) : -1, durationMs > 0);
+    }
+
+    /**
+     * @param maxFrames предел длины результата в кадрах; значение < 0 - без предела.
+     * @param isPadded дополнять результат тишиной до {@code maxFrames} после окончания последнего трека.
+     * @return количество записанных кадров.
+     */
+    private long render(PcmSink sink, long maxFrames, boolean isPadded) throws IOException {
+        if (isRendered) {
+            throw new FoxPlayerException("OfflineRenderer: The scenario was rendered already.");
+        }
+        isRendered = true;
+        boolean isLimited = maxFrames >= 0;
+        if (!isLimited) {
+            checkFinite();
+        }
+        cues.sort(Comparator.comparingLong(c -> c.startFrame));
+        stops.sort(Comparator.comparingLong(s -> s.frame));
+
+        int channels = format.getChannels();
+        int frameSize = format.getFrameSize();
+        float[] acc = new float[DEFAULT_BLOCK_FRAMES * channels];
+        byte[] out = new byte[DEFAULT_BLOCK_FRAMES * frameSize];
+        List<Cue> active = new ArrayList<>();
+
+        long pos = 0;
+        int nextCue = 0;
+        int nextStop = 0;
+        try {
+            while (!isLimited || pos < maxFrames) {
+                while (nextCue < cues.size() && cues.get(nextCue).startFrame <= pos) {
+                    Cue cue = cues.get(nextCue++);
+                    cue.voice = new MixerVoice(cue.trackName, player.sourceOpener(cue.trackName, cue.isLooped, 0, -1, format),
+                            cue.volume, cue.fadeInMs, metrics, System.nanoTime());
+                    active.add(cue);
+                }
+                while (nextStop < stops.size() && stops.get(nextStop).frame <= pos) {
+                    Stop stop = stops.get(nextStop++);
+                    for (Cue cue : active) {
+                        if (cue.trackName.equals(stop.trackName)) {
+                            cue.voice.stop(stop.fadeOutMs);
+                        }
+                    }
+                }
+                if (!isPadded && active.isEmpty() && nextCue == cues.size()) {
+                    break;
+                }
+
+                // блок заканчивается на ближайшем событии, чтобы старты и остановки были точны до кадра:
+                long blockEnd = pos + DEFAULT_BLOCK_FRAMES;
+                if (isLimited) {
+                    blockEnd = Math.min(blockEnd, maxFrames);
+                }
+                if (nextCue < cues.size()) {
+                    blockEnd = Math.min(blockEnd, cues.get(nextCue).startFrame);
+                }
+                if (nextStop < stops.size()) {
+                    blockEnd = Math.min(blockEnd, stops.get(nextStop).frame);
+                }
+                int frames = (int) (blockEnd - pos);
+
+                Arrays.fill(acc, 0, frames * channels, 0f);
+                int mixed = 0;
+                for (Iterator<Cue> it = active.iterator(); it.hasNext(); ) {
+                    MixerVoice voice = it.next().voice;
+                    mixed = Math.max(mixed, voice.mixInto(acc, frames, format));
+                    if (voice.getException() != null) {
+                        throw new FoxPlayerException(String.format("OfflineRenderer: The track '%s' can not be rendered: %s",
+                                voice.getTrackName(), voice.getException().getMessage()));
+                    }
+                    if (voice.isFinished()) {
+                        it.remove();
+                    }
+                }
+                if (!isPadded && active.isEmpty() && nextCue == cues.size()) {
+                    frames = mixed; // последний трек закончился внутри блока - хвост блока не пишется
+                }
+
+                PcmKernels.toPcm16(acc, 0, out, 0, frames * channels);
+                sink.write(out, 0, frames * frameSize);
+                pos += frames;
+            }
+        } finally {
+            for (Cue cue : active) {
+                cue.voice.finish();
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Рендер "до конца" невозможен, если зацикленный трек нигде не останавливается.
+     */
+    private void checkFinite() {
+        for (Cue cue : cues) {
+            if (cue.isLooped && stops.stream().noneMatch(s -> s.trackName.equals(cue.trackName) && s.frame >= cue.startFrame)) {
+                throw new FoxPlayerException(String.format("OfflineRenderer: The looped track '%s' is never stopped. Set a render duration or a stop time.",
+                        cue.trackName));
+            }
+        }
+    }
+
+    private long toFrames(long ms) {
+        return (long) (ms * (double) format.getFrameRate() / 1000d);
+    }
+
+    private static final class Cue {
+        private final String trackName;
+        private final long startFrame;
+        private final boolean isLooped;
+        private final float volume;
+        private final int fadeInMs;
+        private MixerVoice voice;
+
+        Cue(String trackName, long startFrame, boolean isLooped, float volume, int fadeInMs) {
+            this.trackName = trackName;
+            this.startFrame = startFrame;
+            this.isLooped = isLooped;
+            this.volume = volume;
+            this.fadeInMs = fadeInMs;
+        }
+    }
+
+    private static final class Stop {
+        private final String trackName;
+        private final long frame;
+        private final int fadeOutMs;
+
+        Stop(String trackName, long frame, int fadeOutMs) {
+            this.trackName = trackName;
+            this.frame = frame;
+            this.fadeOutMs = fadeOutMs;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static fox.Out.Print;
+
+/**
+ * LRU-кэш декодированных треков. Суммарный размер PCM-данных не превышает бюджет,
+ * при нехватке места вытесняются давно не игравшие треки.
+ */
+public class PcmCache {
+    private final Map<String, PcmTrack> tracks = new LinkedHashMap<>(16, 0.75f, true);
+    @Getter
+    private long budget;
+    @Getter
+    private long usedBytes = 0;
+
+    public PcmCache(long budget) {
+        if (budget <= 0) {
+            throw new FoxPlayerException("PcmCache: The cache budget must be positive, but was " + budget);
+        }
+        this.budget = budget;
+    }
+
+    public synchronized PcmTrack get(@NonNull String trackName) {
+        return tracks.get(trackName);
+    }
+
+    public synchronized boolean contains(@NonNull String trackName) {
+        return tracks.containsKey(trackName);
+    }
+
+    /**
+     * Декодирует трек и помещает его в кэш. Если трек уже в кэше - просто отмечает его как использованный.
+     * @param targetFormat формат, к которому трек приводится при декодировании (null - оставить исходный).
+     * @return декодированный трек.
+     */
+    public PcmTrack load(@NonNull String trackName, @NonNull File source, AudioFormat targetFormat) {
+        PcmTrack cached = get(trackName);
+        if (cached != null) {
+            return cached;
+        }
+
+        // декодирование долгое, поэтому вне блокировки:
+        PcmTrack decoded = PcmTrack.decode(trackName, source, targetFormat);
+        if (decoded.getSizeInBytes() > budget) {
+            throw new FoxPlayerException(String.format("PcmCache.load: The track '%s' (%d bytes) is bigger than the cache budget (%d bytes).",
+                    trackName, decoded.getSizeInBytes(), budget));
+        }
+        return put(decoded);
+    }
+
+    synchronized PcmTrack put(@NonNull PcmTrack track) {
+        PcmTrack old = tracks.get(track.getName());
+        if (old != null) {
+            return old;
+        }
+        tracks.put(track.getName(), track);
+        usedBytes += track.getSizeInBytes();
+        trim();
+        return track;
+    }
+
+    public synchronized boolean evict(@NonNull String trackName) {
+        PcmTrack removed = tracks.remove(trackName);
+        if (removed != null) {
+            usedBytes -= removed.getSizeInBytes();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        tracks.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized void setBudget(long budget) {
+        if (budget <= 0) {
+            throw new FoxPlayerException("PcmCache: The cache budget must be positive, but was " + budget);
+        }
+        this.budget = budget;
+        trim();
+    }
+
+    public synchronized int size() {
+        return tracks.size();
+    }
+
+    private void trim() {
+        Iterator<PcmTrack> it = tracks.values().iterator();
+        while (usedBytes > budget && it.hasNext()) {
+            PcmTrack eldest = it.next();
+            it.remove();
+            usedBytes -= eldest.getSizeInBytes();
+            Print(getClass(), LEVEL.DEBUG, "PcmCache: The track '" + eldest.getName() + "' was evicted from cache.");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package fox.player;
+
+/**
+ * Базовые операции над PCM-буферами: перевод 16-битного PCM во float и обратно с насыщением, усиление (постоянное и с линейным
+ * переходом), сведение буферов и таблица dB -> линейный множитель для {@link VolumeConverter#gainToLinear(float)}.
+ * Циклы плоские, без ветвлений и вызовов внутри, чтобы JIT (C2) мог векторизовать их сам, без jdk.incubator.vector.
+ * Float-сэмплы - в диапазоне -1..1 (масштаб 32768), каналы чередуются.
+ */
+public final class PcmKernels {
+    /**
+     * Диапазон и шаг таблицы {@link #dbToLinear(float)}.
+     */
+    public static final float TABLE_MIN_DB = -96f;
+    public static final float TABLE_MAX_DB = 24f;
+    public static final float TABLE_STEP_DB = 0.1f;
+
+    private static final float[] DB_TABLE = buildDbTable();
+
+    private PcmKernels() {}
+
+    /**
+     * 16-битный signed little-endian PCM -> float.
+     * @param samples количество сэмплов (кадры * каналы).
+     */
+    public static void toFloat(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            int b = srcOffset + (i << 1);
+            dst[dstOffset + i] = (short) ((src[b] & 0xFF) | (src[b + 1] << 8)) * (1f / 32768f);
+        }
+    }
+
+    /**
+     * Float -> 16-битный signed little-endian PCM с насыщением (значения вне -1..1 ограничиваются, а не заворачиваются).
+     * Для значений, полученных из {@link #toFloat}, преобразование точно обратное.
+     */
+    public static void toPcm16(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            int v = (int) (src[srcOffset + i] * 32768f);
+            v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+            int b = dstOffset + (i << 1);
+            dst[b] = (byte) v;
+            dst[b + 1] = (byte) (v >> 8);
+        }
+    }
+
+    /**
+     * Постоянное усиление: {@code buf[i] *= gain}.
+     */
+    public static void gain(float[] buf, int offset, int samples, float gain) {
+        for (int i = offset, end = offset + samples; i < end; i++) {
+            buf[i] *= gain;
+        }
+    }
+
+    /**
+     * Линейный переход усиления по кадрам: кадр {@code f} (с нуля) умножается на {@code from + step * (f + 1)}.
+     * @return усиление последнего кадра.
+     */
+    public static float gainRamp(float[] buf, int offset, int frames, int channels, float from, float step) {
+        if (channels == 1) {
+            for (int f = 0; f < frames; f++) {
+                buf[offset + f] *= from + step * (f + 1);
+            }
+        } else if (channels == 2) {
+            for (int f = 0; f < frames; f++) {
+                float g = from + step * (f + 1);
+                int i = offset + (f << 1);
+                buf[i] *= g;
+                buf[i + 1] *= g;
+            }
+        } else {
+            for (int f = 0, i = offset; f < frames; f++) {
+                float g = from + step * (f + 1);
+                for (int c = 0; c < channels; c++, i++) {
+                    buf[i] *= g;
+                }
+            }
+        }
+        return from + step * frames;
+    }
+
+    /**
+     * Сведение: {@code acc[i] += src[i]}.
+     */
+    public static void mix(float[] acc, int accOffset, float[] src, int srcOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            acc[accOffset + i] += src[srcOffset + i];
+        }
+    }
+
+    /**
+     * Сведение с усилением: {@code acc[i] += src[i] * gain}.
+     */
+    public static void mix(float[] acc, int accOffset, float[] src, int srcOffset, int samples, float gain) {
+        for (int i = 0; i < samples; i++) {
+            acc[accOffset + i] += src[srcOffset + i] * gain;
+        }
+    }
+
+    /**
+     * Линейный множитель для dB по таблице (шаг {@link #TABLE_STEP_DB}, линейная интерполяция между узлами).
+     * Значения вне таблицы ограничиваются её краями, {@link #TABLE_MIN_DB} и ниже - тишина.
+     */
+    public static float dbToLinear(float db) {
+        if (db <= TABLE_MIN_DB) {
+            return 0f;
+        }
+        float pos = (Math.min(db, TABLE_MAX_DB) - TABLE_MIN_DB) / TABLE_STEP_DB;
+        int index = Math.min((int) pos, DB_TABLE.length - 2);
+        float frac = pos - index;
+        return DB_TABLE[index] + (DB_TABLE[index + 1] - DB_TABLE[index]) * frac;
+    }
+
+    /**
+     * @return уровень в dB для линейного множителя ({@link Float#NEGATIVE_INFINITY} для тишины).
+     */
+    public static float linearToDb(float linear) {
+        return linear <= 0f ? Float.NEGATIVE_INFINITY : (float) (20d * Math.log10(linear));
+    }
+
+    private static float[] buildDbTable() {
+        int size = Math.round((TABLE_MAX_DB - TABLE_MIN_DB) / TABLE_STEP_DB) + 1;
+        float[] table = new float[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = (float) Math.pow(10d, (TABLE_MIN_DB + i * TABLE_STEP_DB) / 20d);
+        }
+        table[0] = 0f; // нижний край таблицы - тишина, как в VolumeConverter
+        return table;
+    }
+}
@@ -0,0 +1,42 @@
+package fox.player;
+
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Приемник 16-битного PCM для офлайн-рендера (см. {@link OfflineRenderer}): WAV-файл, буфер в памяти и т.п.
+ */
+public interface PcmSink extends Closeable {
+
+    /**
+     * Записывает целое число кадров.
+     */
+    void write(byte[] buffer, int offset, int length) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+
+    /**
+     * @return приемник, пишущий WAV-файл; заголовок с итоговой длиной дописывается при {@link #close()}.
+     */
+    static PcmSink wav(@NonNull Path file, @NonNull AudioFormat format) throws IOException {
+        return new WavPcmSink(file, format);
+    }
+
+    /**
+     * @return приемник, пишущий в буфер с его текущей позиции (переполнение - {@link FoxPlayerException}).
+     */
+    static PcmSink of(@NonNull ByteBuffer buffer) {
+        return (data, offset, length) -> {
+            if (buffer.remaining() < length) {
+                throw new FoxPlayerException(String.format("PcmSink: The buffer is full (%d bytes left, %d needed).", buffer.remaining(), length));
+            }
+            buffer.put(data, offset, length);
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package fox.player;
+
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Источник 16-битного PCM для воспроизведения: декодируемый файл, кэш в памяти и т.п.
+ * Используется только одним потоком вывода.
+ */
+public interface PcmSource extends Closeable {
+    AudioFormat getFormat();
+
+    /**
+     * @return длина трека в кадрах или -1, если она неизвестна (mp3 и т.п.).
+     */
+    default long getFrameLength() {
+        return -1;
+    }
+
+    /**
+     * @return количество прочитанных байт (целое число кадров) или -1 в конце данных.
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Переводит чтение на указанный кадр от начала трека.
+     */
+    void seek(long frame) throws IOException;
+
+    /**
+     * @return true, если данные уже в памяти и чтение не ждет диск и декодер (такой источник можно читать из потока микшера).
+     */
+    default boolean isInMemory() {
+        return false;
+    }
+
+    @Override
+    default void close() throws IOException {}
+
+    static PcmSource open(@NonNull File track) throws Exception {
+        return new FilePcmSource(track);
+    }
+
+    static PcmSource of(@NonNull PcmTrack pcm) {
+        return new BufferPcmSource(pcm.getData(), pcm.getFormat());
+    }
+
+    /**
+     * Приводит источник к формату вывода (частота, число каналов) потоковым ресэмплером.
+     * @param outFormat формат вывода (16 бит signed little-endian) или null - без преобразования.
+     * @return тот же источник, если формат уже совпадает.
+     */
+    static PcmSource convert(@NonNull PcmSource source, AudioFormat outFormat) {
+        if (outFormat == null) {
+            return source;
+        }
+        AudioFormat in = source.getFormat();
+        if (isPcm16le(in) && in.getSampleRate() == outFormat.getSampleRate() && in.getChannels() == outFormat.getChannels()) {
+            return source;
+        }
+        return new ResamplingPcmSource(source, outFormat);
+    }
+
+    /**
+     * Декодирует источник с упреждением в отдельном потоке плеера (см. {@link ReadAheadPcmSource}).
+     * @param lookaheadMs сколько PCM держать готовым наперед.
+     */
+    static PcmSource readAhead(@NonNull PcmSource source, int lookaheadMs, @NonNull PlayerScheduler scheduler) {
+        return readAhead(source, lookaheadMs, scheduler, null, null);
+    }
+
+    /**
+     * @param metrics метрики, в которые пишутся ожидания декодера, или null.
+     * @param trackName имя трека для метрик.
+     */
+    static PcmSource readAhead(@NonNull PcmSource source, int lookaheadMs, @NonNull PlayerScheduler scheduler, PlayerMetrics metrics, String trackName) {
+        return new ReadAheadPcmSource(source, LatencyProfile.toBytes(lookaheadMs, source.getFormat()), scheduler, metrics, trackName);
+    }
+
+    static boolean isPcm16le(AudioFormat format) {
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) && format.getSampleSizeInBits() == 16 && !format.isBigEndian();
+    }
+
+    /**
+     * Бесшовно зацикливает источник: после кадра {@code loopEnd} (или конца трека) чтение продолжается с {@code loopStart}.
+     * Тело петли файла декодируется один раз и дальше звучит из памяти (см. {@link LoopingPcmSource}).
+     * @param loopStart кадр начала петли (0 - начало трека, всё до него звучит один раз как вступление).
+     * @param loopEnd кадр конца петли (не включительно), значение <= 0 - конец трека.
+     */
+    static PcmSource loop(@NonNull PcmSource source, long loopStart, long loopEnd) {
+        return new LoopingPcmSource(source, loopStart, loopEnd);
+    }
+}
@@ -0,0 +1,76 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * Полностью декодированный трек в формате PCM, хранящийся вне кучи (direct ByteBuffer).
+ * Буфер данных неизменяем, каждый голос читает его через собственную копию позиции {@link #getData()}.
+ */
+public class PcmTrack {
+    @Getter
+    private final String name;
+    @Getter
+    private final AudioFormat format;
+    private final ByteBuffer data;
+
+    PcmTrack(@NonNull String name, @NonNull AudioFormat format, @NonNull ByteBuffer data) {
+        this.name = name;
+        this.format = format;
+        this.data = data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Декодирует файл целиком в PCM.
+     * @param name имя трека для логов.
+     * @param source исходный аудио-файл.
+     * @param targetFormat формат результата или null - {@link PlayThread.DefaultFormat01} от формата файла.
+     * @return декодированный трек.
+     */
+    public static PcmTrack decode(@NonNull String name, @NonNull File source, AudioFormat targetFormat) {
+        try (PcmSource in = PcmSource.convert(PcmSource.open(source), targetFormat)) {
+            AudioFormat format = in.getFormat();
+            long frames = in.getFrameLength();
+            ByteBuffer direct;
+            if (frames > 0 && frames * format.getFrameSize() <= Integer.MAX_VALUE) {
+                direct = ByteBuffer.allocateDirect((int) (frames * format.getFrameSize()));
+                byte[] buffer = new byte[8192 / format.getFrameSize() * format.getFrameSize()];
+                int nBytesRead;
+                while (direct.hasRemaining() && (nBytesRead = in.read(buffer, 0, Math.min(buffer.length, direct.remaining()))) != -1) {
+                    direct.put(buffer, 0, nBytesRead);
+                }
+            } else {
+                // длина потока неизвестна (mp3 и т.п.) - читаем целиком и копируем вне кучи:
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192 / format.getFrameSize() * format.getFrameSize()];
+                int nBytesRead;
+                while ((nBytesRead = in.read(buffer, 0, buffer.length)) != -1) {
+                    baos.write(buffer, 0, nBytesRead);
+                }
+                byte[] pcm = baos.toByteArray();
+                direct = ByteBuffer.allocateDirect(pcm.length);
+                direct.put(pcm);
+            }
+            direct.flip();
+            return new PcmTrack(name, format, direct);
+        } catch (Exception e) {
+            throw new FoxPlayerException(String.format("PcmTrack.decode: The track '%s' can not be decoded: %s", name, e.getMessage()));
+        }
+    }
+
+    /**
+     * @return новый независимый указатель на данные трека (позиция 0).
+     */
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    public int getSizeInBytes() {
+        return data.limit();
+    }
+}
@@ -4,184 +4,332 @@ import fox.Out;
 import lombok.NonNull;
 
 import javax.sound.sampled.*;
-import javax.swing.*;
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static fox.Out.Print;
 import static fox.player.FoxPlayer.getVolumeConverter;
 
-public class PlayThread extends Thread {
-    private final Thread currentThread;
-    private final File track;
-    private final boolean isLooped;
+/**
+ * Воспроизведение одного трека. Несмотря на имя, собственного потока не создает и выполняется в пуле {@link PlayerScheduler}.
+ * Громкость, нарастание и затухание применяются программно к каждому кадру PCM перед записью в линию.
+ */
+public class PlayThread implements Runnable, PlayerVoice {
+    private final String name;
+    private final String trackName;
+    private final PlayerScheduler scheduler;
+    private final Callable<PcmSource> sourceOpener;
+    private final GainRamp gainRamp;
+    private final PlayerMetrics metrics;
+    private final long requestedAt;
+    private final LatencyProfile baseProfile;
+    private final Map<LatencyProfile, LatencyProfile> grownProfiles;
+    private final LinePool linePool;
+    private final VoiceListener listener;
+    private final AtomicBoolean isReported = new AtomicBoolean(false);
 
-    private Thread vfThread;
-    private FloatControl masterVolume;
-    private BooleanControl muteControl;
+    private volatile Future<?> future;
     private volatile Exception ex;
 
     private volatile boolean isBraked = false;
-    private boolean isLoopFloatedAlready = false;
-    private final int audioBufDim = 8192; // default 4096
-    private final float volume;
+    private volatile boolean isStopping = false;
+    private volatile boolean isStarted = false;
+    private volatile boolean isFinished = false;
+    private boolean isWriteFailed = false;
+    private volatile boolean isMuted = false;
+    private volatile float volume;
+    private LatencyProfile profile;
 
+    /**
+     * @param sourceOpener открывает источник PCM уже в потоке воспроизведения (зацикливание задается самим источником,
+     *                     см. {@link PcmSource#loop(PcmSource, long, long)}).
+     * @param volume громкость (gain в dB).
+     * @param fadeInMs длительность нарастания громкости при старте.
+     * @param metrics метрики плеера, в которые пишется задержка старта, опустошения буфера и время декодирования.
+     * @param requestedAt момент вызова play() по {@link System#nanoTime()}.
+     * @param profile размеры буфера линии и блока записи, упреждение декодирования.
+     * @param grownProfiles выросшие копии адаптивных профилей плеера по исходному профилю: трек начинает с уже выросшего буфера
+     *                      и записывает сюда свой рост; null - рост действует только до конца трека.
+     * @param linePool пул, из которого берется и в который возвращается линия, или null - открывать и закрывать линию самому.
+     * @param listener получает завершение трека или его ошибку, может быть null.
+     */
+    public PlayThread(@NonNull String name, @NonNull PlayerScheduler scheduler, @NonNull String trackName,
+                      @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs,
+                      @NonNull PlayerMetrics metrics, long requestedAt, @NonNull LatencyProfile profile,
+                      Map<LatencyProfile, LatencyProfile> grownProfiles, LinePool linePool, VoiceListener listener) {
+        this.name = name;
+        this.trackName = trackName;
+        this.scheduler = scheduler;
+        this.sourceOpener = sourceOpener;
+        this.volume = volume;
+        this.metrics = metrics;
+        this.requestedAt = requestedAt;
+        this.baseProfile = profile;
+        this.grownProfiles = grownProfiles;
+        this.profile = grownProfiles == null ? profile : grownProfiles.getOrDefault(profile, profile);
+        this.linePool = linePool;
+        this.listener = listener;
 
-    public PlayThread(@NonNull String name, File track, float volume, boolean isLooped) {
-        setName(name);
-        currentThread = this;
+        gainRamp = new GainRamp(0f);
+        gainRamp.rampTo(getVolumeConverter().gainToLinear(volume), fadeInMs);
 
-        this.track = track;
-        this.volume = volume;
-        this.isLooped = isLooped;
+        future = scheduler.submit(this);
+    }
+
+    public String getName() {
+        return name;
+    }
 
-        start();
+    @Override
+    public String getTrackName() {
+        return trackName;
+    }
+
+    /**
+     * @return true, если трек доиграл, остановлен или снят с очереди пула до старта.
+     */
+    @Override
+    public boolean isFinished() {
+        Future<?> task = future;
+        return isFinished || task != null && task.isCancelled();
     }
 
     @Override
     public void run() {
-        Print(getClass(), Out.LEVEL.DEBUG, "FoxPlayer.play: The '" + track.getName() + "' is played...");
+        Print(getClass(), Out.LEVEL.DEBUG, "FoxPlayer.play: The '" + trackName + "' is played...");
+        isStarted = true;
+
+        metrics.voiceOpened();
 
         SourceDataLine line = null;
-        do {
-            try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(track)); // default 8192 byte
-                 AudioInputStream in = AudioSystem.getAudioInputStream(bis)
-            ) {
-                if (in == null) {
-                    throw new RuntimeException("Media.musicPlay: The track '" + track.getName() + "' has problem with input stream?..");
-                }
+        long decodeStart = System.nanoTime();
+        try (PcmSource source = readAhead(sourceOpener.call())) {
+            AudioFormat format = source.getFormat();
+            line = openLine(format);
+            if (isBraked()) {
+                return;
+            }
 
-                AudioFormat targetFormat = new DefaultFormat01(in.getFormat());
-                try (AudioInputStream dataIn = AudioSystem.getAudioInputStream(targetFormat, in)) {
-                    DataLine.Info info = new DataLine.Info(SourceDataLine.class, targetFormat); // get a line from a mixer in the system with the wanted format
-                    line = (SourceDataLine) AudioSystem.getLine(info);
-                    if (line == null) {
-                        throw new RuntimeException("Media.musicPlay: The track line is null. " +
-                                "A problem with info or format?\n\t(target:\n" + info + ";\n\tformat:\n" + targetFormat + ").");
-                    } else {
-                        line.open();
-                    }
-                    getControls(line, masterVolume == null ? volume : masterVolume.getValue());
-                    line.start();
-
-                    byte[] buffer = new byte[audioBufDim];
-                    if (isBraked || currentThread.isInterrupted() || isInterrupted()) {
-                        return;
-                    } else {
-                        if (!isLoopFloatedAlready) {volumeFloater(1);}
-
-                        int nBytesRead;
-                        while ((nBytesRead = dataIn.read(buffer, 0, buffer.length)) != -1) {
-                            if (isBraked() || currentThread.isInterrupted() || isInterrupted()) {
-                                break;
-                            }
-                            try {line.write(buffer, 0, nBytesRead);
-                            } catch (IllegalArgumentException iae) {
-                                iae.printStackTrace();
-                                interrupt();
-                            }
+            // линия открыта один раз на всё время звучания, петли склеиваются самим источником:
+            byte[] buffer = new byte[chunkBytes(line, format)];
+            boolean isFirst = true;
+            int underruns = 0;
+            int nBytesRead;
+            while ((nBytesRead = source.read(buffer, 0, buffer.length)) != -1) {
+                metrics.decoded(System.nanoTime() - decodeStart);
+                if (isBraked()) {
+                    break;
+                }
+                if (isFirst) {
+                    write(line, format, buffer, nBytesRead);
+                    metrics.playStarted(trackName, requestedAt);
+                    isFirst = false;
+                } else {
+                    // линия успела полностью опустошиться, пока декодировался очередной блок:
+                    if (line.available() >= line.getBufferSize()) {
+                        metrics.underrun(trackName);
+                        if (++underruns >= profile.getUnderrunsToGrow() && grow()) {
+                            // буфер всё равно пуст, так что переоткрытие линии большего размера не добавляет щелчка:
+                            underruns = 0;
+                            SourceDataLine small = line;
+                            line = openLine(format);
+                            closeLine(small);
+                            Print(getClass(), Out.LEVEL.DEBUG, "FoxPlayer.play: The line buffer was grown up for the '" + trackName + "': " + profile);
                         }
                     }
+                    write(line, format, buffer, nBytesRead);
                 }
-            } catch (Exception e) {
-                ex = e;
-                interrupt();
-                currentThread.interrupt();
-            } finally {
-                if (line != null) {
-//                    line.drain();
-                    line.stop();
-                    line.close();
-                }
+                decodeStart = System.nanoTime();
+            }
+        } catch (Exception e) {
+            ex = e;
+            isBraked = true;
+            metrics.error(trackName, e);
+        } finally {
+            metrics.voiceClosed();
+            if (line != null) {
+//                line.drain();
+                closeLine(line);
             }
-        } while (isLooped && !isInterrupted());
+            isFinished = true;
+            report();
+        }
     }
 
-    private void volumeFloater(int vector) {
-        if (vfThread != null && vfThread.isAlive()) {
-            vfThread.interrupt();
+    /**
+     * Переходит на выросшую копию профиля и сообщает о ней плееру (параллельные треки оставляют больший из буферов).
+     * @return true, если буфер вырос.
+     */
+    private boolean grow() {
+        LatencyProfile next = profile.grown();
+        if (next == profile) {
+            return false;
         }
-        float vfStep = 0.25f;
-        float aimVolume;
-        if (vector == 1) {
-            aimVolume = masterVolume.getValue();
-        } else {
-            aimVolume = FoxPlayer.getVolumeConverter().getMinimum();
+        profile = next;
+        if (grownProfiles != null) {
+            grownProfiles.merge(baseProfile, next, (a, b) -> a.getBufferMs() >= b.getBufferMs() ? a : b);
         }
+        return true;
+    }
 
-        vfThread = new Thread(() -> {
-            try {
-                if (vector == 1) {
-                    while (masterVolume.getValue() < aimVolume - 1) {
-                        masterVolume.setValue(masterVolume.getValue() + vfStep);
-                        sleep(50);
-                    }
-                    masterVolume.setValue(aimVolume);
-                } else {
-                    while (masterVolume.getValue() > aimVolume + 1) {
-                        masterVolume.setValue(masterVolume.getValue() - vfStep);
-                        sleep(20);
-                    }
-                    masterVolume.setValue(aimVolume);
-                }
-            } catch (InterruptedException e) {
-                currentThread().interrupt();
-            } finally {
-                isLoopFloatedAlready = true;
+    /**
+     * С упреждением поток воспроизведения только копирует готовый PCM, а чтение файла и декодирование идут в отдельном потоке.
+     */
+    private PcmSource readAhead(PcmSource source) {
+        int readAheadMs = profile.getReadAheadMs();
+        return readAheadMs > 0 ? PcmSource.readAhead(source, readAheadMs, scheduler, metrics, trackName) : source;
+    }
+
+    /**
+     * @return размер блока записи по профилю, но не больше половины фактического буфера линии (иначе запись будет ждать всегда).
+     */
+    private int chunkBytes(SourceDataLine line, AudioFormat format) {
+        int frameSize = Math.max(1, format.getFrameSize());
+        int chunk = Math.min(profile.getChunkBytes(format), line.getBufferSize() / 2 / frameSize * frameSize);
+        return Math.max(frameSize, chunk);
+    }
+
+    private SourceDataLine openLine(AudioFormat targetFormat) throws LineUnavailableException {
+        int bufferBytes = profile.getBufferBytes(targetFormat);
+        SourceDataLine line;
+        if (linePool != null) {
+            line = linePool.lease(targetFormat, bufferBytes);
+        } else {
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, targetFormat); // get a line from a mixer in the system with the wanted format
+            line = (SourceDataLine) AudioSystem.getLine(info);
+            if (line == null) {
+                throw new RuntimeException("Media.musicPlay: The track line is null. " +
+                        "A problem with info or format?\n\t(target:\n" + info + ";\n\tformat:\n" + targetFormat + ").");
             }
-        }) {
-            {
-                setDaemon(true);
-                if (vector == 1) {
-                    masterVolume.setValue(getVolumeConverter().getMinimum() / 2);
-                }
+            if (bufferBytes > 0) {
+                line.open(targetFormat, bufferBytes);
+            } else {
+                line.open(targetFormat);
             }
-        };
-        vfThread.start();
+        }
+        line.start();
+        return line;
+    }
+
+    /**
+     * Возвращает линию в пул, а после ошибки (или без пула) закрывает её.
+     */
+    private void closeLine(SourceDataLine line) {
+        if (linePool == null) {
+            line.stop();
+            line.close();
+        } else if (ex != null || isWriteFailed) {
+            linePool.discard(line);
+        } else {
+            linePool.release(line);
+        }
+    }
+
+    private void write(SourceDataLine line, AudioFormat format, byte[] buffer, int length) {
+        gainRamp.apply(buffer, length, format);
+        try {line.write(buffer, 0, length);
+            metrics.streamed(length);
+        } catch (IllegalArgumentException iae) {
+            iae.printStackTrace();
+            isWriteFailed = true;
+            isBraked = true;
+        }
+        if (isStopping && gainRamp.isSilent()) {
+            isBraked = true;
+        }
     }
 
     private boolean isBraked() {
-        return isBraked;
+        return isBraked || Thread.currentThread().isInterrupted();
     }
 
+    /**
+     * Плавно глушит трек за {@link GainRamp#DEFAULT_FADE_OUT_MS} и затем останавливает его.
+     */
     public void close() {
-        new Thread(() -> {
-//            System.out.println("\nTry to stop thread '" + getName() + "'...");
-            try {
-                volumeFloater(0);
-                vfThread.join();
-                isBraked = true;
-                interrupt();
-                currentThread.interrupt();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        close(GainRamp.DEFAULT_FADE_OUT_MS);
+    }
+
+    /**
+     * Плавно глушит трек и затем останавливает его. Не блокирует вызывающий поток:
+     * затухание выполняется в цикле записи, так что трек замолкает ровно через {@code fadeOutMs}
+     * (плюс задержка буфера линии).
+     */
+    public void close(int fadeOutMs) {
+        isStopping = true;
+        if (!isStarted || fadeOutMs <= 0) {
+            brake();
+            return;
+        }
+        gainRamp.rampTo(0f, fadeOutMs);
+    }
+
+    @Override
+    public void stop(int fadeOutMs) {
+        close(fadeOutMs);
+    }
+
+    /**
+     * Немедленно останавливает трек без затухания.
+     */
+    void brake() {
+        isBraked = true;
+        Future<?> task = future;
+        if (task != null) {
+            task.cancel(true);
+        }
+        if (!isStarted) {
+            report(); // снят с очереди пула до старта, run() уже не выполнится
+        }
+    }
+
+    /**
+     * Сообщает слушателю о завершении ровно один раз.
+     */
+    private void report() {
+        if (listener != null && isReported.compareAndSet(false, true)) {
+            Exception e = ex;
+            if (e != null) {
+                listener.onError(trackName, e);
+            } else {
+                listener.onFinished(trackName);
             }
-//            System.err.println("Media thread '" + getName() + "' was stopped.");
-        }).start();
+        }
     }
 
     public Throwable getException() {
         return ex;
     }
 
+    @Override
     public void mute(boolean isMuted) {
-        muteControl.setValue(isMuted);
+        this.isMuted = isMuted;
+        applyVolume(GainRamp.DEFAULT_VOLUME_RAMP_MS);
     }
 
     public void setVolume(float volume) {
-        masterVolume.setValue(volume);
+        setVolume(volume, GainRamp.DEFAULT_VOLUME_RAMP_MS);
     }
 
-    private void getControls(SourceDataLine line, float volume) {
-        muteControl = (BooleanControl) line.getControl(BooleanControl.Type.MUTE);
-        muteControl.setValue(false);
+    /**
+     * @param volume новая громкость (gain в dB).
+     * @param rampMs длительность перехода к новой громкости.
+     */
+    @Override
+    public void setVolume(float volume, int rampMs) {
+        this.volume = volume;
+        applyVolume(rampMs);
+    }
 
-        masterVolume = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-        masterVolume.setValue(volume);
+    private void applyVolume(int rampMs) {
+        if (!isStopping) {
+            gainRamp.rampTo(isMuted ? 0f : getVolumeConverter().gainToLinear(volume), rampMs);
+        }
     }
 
-    private static class DefaultFormat01 extends AudioFormat {
+    static class DefaultFormat01 extends AudioFormat {
         public DefaultFormat01(AudioFormat baseFormat) {
             super(AudioFormat.Encoding.PCM_SIGNED, baseFormat.getSampleRate(),
                     16,
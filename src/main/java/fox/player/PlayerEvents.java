@@ -0,0 +1,83 @@
+package fox.player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-события плеера. Пока запись JFR не запущена, {@code shouldCommit()} отсекает их почти бесплатно.
+ */
+class PlayerEvents {
+
+    private PlayerEvents() {}
+
+    static void playLatency(String player, String track, long latencyNanos) {
+        PlayLatencyEvent event = new PlayLatencyEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.track = track;
+            event.latency = latencyNanos;
+            event.commit();
+        }
+    }
+
+    static void underrun(String player, String track) {
+        UnderrunEvent event = new UnderrunEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.track = track;
+            event.commit();
+        }
+    }
+
+    static void error(String player, String track, Throwable t) {
+        VoiceErrorEvent event = new VoiceErrorEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.track = track;
+            event.message = String.valueOf(t);
+            event.commit();
+        }
+    }
+
+    @Name("fox.player.PlayLatency")
+    @Label("Play Latency")
+    @Category({"FoxGames", "Audio"})
+    @Description("Time from FoxPlayer.play() to the first sample written")
+    static class PlayLatencyEvent extends Event {
+        @Label("Player")
+        String player;
+        @Label("Track")
+        String track;
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("fox.player.Underrun")
+    @Label("Line Underrun")
+    @Category({"FoxGames", "Audio"})
+    @Description("The output line ran out of data")
+    static class UnderrunEvent extends Event {
+        @Label("Player")
+        String player;
+        @Label("Track")
+        String track;
+    }
+
+    @Name("fox.player.VoiceError")
+    @Label("Voice Error")
+    @Category({"FoxGames", "Audio"})
+    @Description("A voice stopped because of an error")
+    static class VoiceErrorEvent extends Event {
+        @Label("Player")
+        String player;
+        @Label("Track")
+        String track;
+        @Label("Message")
+        String message;
+    }
+}
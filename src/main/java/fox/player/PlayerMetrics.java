@@ -0,0 +1,142 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики и гистограммы плеера, которые можно читать в продакшене без профайлера.
+ * При {@link #isJfrEnabled()} дополнительно пишутся JFR-события (см. {@link PlayerEvents}).
+ */
+public class PlayerMetrics {
+    @Getter
+    private final String name;
+    /**
+     * Задержка от вызова play() до записи первого сэмпла в линию (или в микшер).
+     */
+    @Getter
+    private final LatencyHistogram playLatency = new LatencyHistogram();
+    /**
+     * Время открытия источника и декодирования одного блока PCM.
+     */
+    @Getter
+    private final LatencyHistogram decodeTime = new LatencyHistogram();
+
+    private final LongAdder plays = new LongAdder();
+    private final LongAdder underruns = new LongAdder();
+    private final LongAdder readAheadStalls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesStreamed = new LongAdder();
+    private final AtomicInteger activeVoices = new AtomicInteger(0);
+
+    /**
+     * Последняя ошибка голоса этого плеера (null, если ошибок не было).
+     */
+    @Getter
+    private volatile Throwable lastError;
+
+    @Getter
+    @Setter
+    private volatile boolean isJfrEnabled = false;
+
+    public PlayerMetrics(String name) {
+        this.name = name;
+    }
+
+    void playStarted(String trackName, long requestedAtNanos) {
+        long latency = System.nanoTime() - requestedAtNanos;
+        plays.increment();
+        playLatency.record(latency);
+        if (isJfrEnabled) {
+            PlayerEvents.playLatency(name, trackName, latency);
+        }
+    }
+
+    void decoded(long nanos) {
+        decodeTime.record(nanos);
+    }
+
+    void streamed(int bytes) {
+        bytesStreamed.add(bytes);
+    }
+
+    void underrun(String trackName) {
+        underruns.increment();
+        if (isJfrEnabled) {
+            PlayerEvents.underrun(name, trackName);
+        }
+    }
+
+    /**
+     * Декодер с упреждением отстал: чтению пришлось ждать его или пропустить блок (см. {@link ReadAheadPcmSource}).
+     */
+    void readAheadStalled(String trackName) {
+        readAheadStalls.increment();
+    }
+
+    void error(String trackName, Throwable t) {
+        errors.increment();
+        lastError = t;
+        if (isJfrEnabled) {
+            PlayerEvents.error(name, trackName, t);
+        }
+    }
+
+    void voiceOpened() {
+        activeVoices.incrementAndGet();
+    }
+
+    void voiceClosed() {
+        activeVoices.decrementAndGet();
+    }
+
+    public long getPlays() {
+        return plays.sum();
+    }
+
+    public long getUnderruns() {
+        return underruns.sum();
+    }
+
+    /**
+     * @return сколько раз чтение из декодера с упреждением не нашло готовых данных (обычно раньше опустошений линии).
+     */
+    public long getReadAheadStalls() {
+        return readAheadStalls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getBytesStreamed() {
+        return bytesStreamed.sum();
+    }
+
+    public int getActiveVoices() {
+        return activeVoices.get();
+    }
+
+    /**
+     * Обнуляет накопленные счетчики и гистограммы (число активных голосов не меняется).
+     */
+    public void reset() {
+        playLatency.reset();
+        decodeTime.reset();
+        plays.reset();
+        underruns.reset();
+        readAheadStalls.reset();
+        errors.reset();
+        bytesStreamed.reset();
+        lastError = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlayerMetrics '%s': plays=%d active=%d underruns=%d read-ahead stalls=%d errors=%d streamed=%d bytes%n"
+                        + "\tplay latency: %s%n\tdecode time: %s",
+                name, getPlays(), getActiveVoices(), getUnderruns(), getReadAheadStalls(), getErrors(), getBytesStreamed(), playLatency, decodeTime);
+    }
+}
@@ -0,0 +1,163 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fox.Out.Print;
+
+/**
+ * Все потоки плеера: ограниченный пул для воспроизведения ({@code <name>-voice-N}), ограниченный пул декодирования
+ * с упреждением ({@code <name>-readahead-N}), небольшой пул блокирующего ввода-вывода вроде сканирования библиотеки
+ * ({@code <name>-io-N}) и один планировщик для коротких отложенных задач ({@code <name>-timer}).
+ * Если все потоки пула заняты, новые треки ждут в очереди - для большого числа одновременных звуков используйте {@link SoftMixer}.
+ */
+public class PlayerScheduler {
+    public static final int DEFAULT_WORKERS = 16;
+    public static final int IO_WORKERS = 4;
+
+    @Getter
+    private final String name;
+    private final ThreadPoolExecutor voicePool;
+    private final ThreadPoolExecutor readAheadPool;
+    private final ThreadPoolExecutor ioPool;
+    private final ScheduledThreadPoolExecutor timer;
+
+    public PlayerScheduler(@NonNull String name, int maxWorkers) {
+        if (maxWorkers < 1) {
+            throw new FoxPlayerException("PlayerScheduler: The workers count must be positive, but was " + maxWorkers);
+        }
+        this.name = name;
+
+        voicePool = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedFactory(name + "-voice-"));
+        voicePool.allowCoreThreadTimeOut(true);
+
+        readAheadPool = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedFactory(name + "-readahead-"));
+        readAheadPool.allowCoreThreadTimeOut(true);
+
+        ioPool = new ThreadPoolExecutor(IO_WORKERS, IO_WORKERS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedFactory(name + "-io-"));
+        ioPool.allowCoreThreadTimeOut(true);
+
+        timer = new ScheduledThreadPoolExecutor(1, new NamedFactory(name + "-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+        timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public Future<?> submit(@NonNull Runnable task) {
+        try {
+            return voicePool.submit(task);
+        } catch (RejectedExecutionException ree) {
+            throw new FoxPlayerException("PlayerScheduler: The scheduler '" + name + "' is shut down.");
+        }
+    }
+
+    public ScheduledFuture<?> schedule(@NonNull Runnable task, long delayMs) {
+        try {
+            return timer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            throw new FoxPlayerException("PlayerScheduler: The scheduler '" + name + "' is shut down.");
+        }
+    }
+
+    /**
+     * Выполняет короткую задачу декодирования с упреждением (см. {@link ReadAheadPcmSource}).
+     */
+    void readAhead(@NonNull Runnable task) {
+        try {
+            readAheadPool.execute(task);
+        } catch (RejectedExecutionException ree) {
+            throw new FoxPlayerException("PlayerScheduler: The scheduler '" + name + "' is shut down.");
+        }
+    }
+
+    /**
+     * Выполняет блокирующую задачу ввода-вывода (сканирование библиотеки, загрузка каталога) вне пулов воспроизведения.
+     */
+    Future<?> io(@NonNull Runnable task) {
+        try {
+            return ioPool.submit(task);
+        } catch (RejectedExecutionException ree) {
+            throw new FoxPlayerException("PlayerScheduler: The scheduler '" + name + "' is shut down.");
+        }
+    }
+
+    /**
+     * Создает (но не запускает) отдельный долгоживущий поток плеера с именем {@code <name><suffix>}.
+     */
+    Thread newThread(@NonNull String suffix, @NonNull Runnable task) {
+        return new NamedFactory(name + suffix).newThread(task);
+    }
+
+    public int getActiveCount() {
+        return voicePool.getActiveCount();
+    }
+
+    public boolean isShutdown() {
+        return voicePool.isShutdown();
+    }
+
+    /**
+     * Не принимает новых задач и ждет завершения текущих не дольше {@code timeoutMs}, после чего прерывает оставшиеся.
+     * @return true, если все потоки завершились вовремя.
+     */
+    public boolean shutdown(long timeoutMs) {
+        timer.shutdown();
+        voicePool.shutdown();
+        ioPool.shutdown();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            boolean done = voicePool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)
+                    && timer.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            // воспроизведение закончилось, упреждение больше не нужно:
+            readAheadPool.shutdown();
+            done = done && readAheadPool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    && ioPool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!done) {
+                Print(getClass(), LEVEL.INFO, "PlayerScheduler '" + name + "' was not stopped in " + timeoutMs + " ms. Interrupting...");
+                voicePool.shutdownNow();
+                readAheadPool.shutdownNow();
+                ioPool.shutdownNow();
+                timer.shutdownNow();
+            }
+            return done;
+        } catch (InterruptedException e) {
+            voicePool.shutdownNow();
+            readAheadPool.shutdownNow();
+            ioPool.shutdownNow();
+            timer.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class NamedFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(0);
+        private final String prefix;
+        private final boolean isNumbered;
+
+        NamedFactory(String prefix) {
+            this.prefix = prefix;
+            this.isNumbered = prefix.endsWith("-");
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread t = new Thread(r, isNumbered ? prefix + counter.incrementAndGet() : prefix);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package fox.player;
+
+/**
+ * Звучащий экземпляр трека: поток воспроизведения {@link PlayThread} или голос микшера {@link MixerVoice}.
+ */
+interface PlayerVoice {
+    String getTrackName();
+
+    boolean isFinished();
+
+    /**
+     * Плавно глушит голос за {@code fadeOutMs} и освобождает его.
+     */
+    void stop(int fadeOutMs);
+
+    void mute(boolean isMuted);
+
+    /**
+     * @param volume новая громкость (gain в dB).
+     * @param rampMs длительность перехода к новой громкости.
+     */
+    void setVolume(float volume, int rampMs);
+}
@@ -0,0 +1,280 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Декодирование с упреждением: задача в пуле {@link PlayerScheduler#readAhead(Runnable)} читает и декодирует источник
+ * в заранее выделенное кольцо PCM, а поток вывода только копирует из кольца. Задержки диска и декодера не доходят
+ * до записи в линию, пока упреждения хватает. Задача заполняет кольцо и завершается, чтение снова ставит её в пул,
+ * когда освободится место, поэтому поток пула не занят на всё время звучания трека.
+ * Кольцо - один писатель и один читатель, без блокировок и без выделения памяти при чтении.
+ */
+class ReadAheadPcmSource implements PcmSource {
+    private static final int MAX_CHUNK_BYTES = 16 * 1024;
+
+    private final PcmSource source;
+    private final AudioFormat format;
+    private final int frameSize;
+    private final byte[] ring;
+    private final int chunkBytes;
+    private final PlayerScheduler scheduler;
+    private final Runnable producer = this::produce;
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean isSourceClosed = new AtomicBoolean(false);
+    private final PlayerMetrics metrics;
+    private final String trackName;
+
+    // позиции записи и чтения растут бесконечно, индекс в кольце - остаток от деления:
+    private volatile long written = 0;
+    private volatile long read = 0;
+    private volatile long seekFrame = -1;
+    private volatile boolean isEnd = false;
+    private volatile boolean isClosed = false;
+    private volatile IOException error;
+    private volatile Thread consumer;
+
+    ReadAheadPcmSource(PcmSource source, int lookaheadBytes, PlayerScheduler scheduler) {
+        this(source, lookaheadBytes, scheduler, null, null);
+    }
+
+    /**
+     * @param lookaheadBytes размер кольца (сколько PCM декодируется наперед).
+     * @param metrics метрики, в которые пишутся ожидания декодера ({@link PlayerMetrics#getReadAheadStalls()}), или null.
+     */
+    ReadAheadPcmSource(PcmSource source, int lookaheadBytes, PlayerScheduler scheduler, PlayerMetrics metrics, String trackName) {
+        this.source = source;
+        this.format = source.getFormat();
+        this.frameSize = Math.max(1, format.getFrameSize());
+        int ringBytes = Math.max(lookaheadBytes, frameSize * 2) / frameSize * frameSize;
+        this.ring = new byte[ringBytes];
+        this.chunkBytes = Math.max(frameSize, Math.min(MAX_CHUNK_BYTES, ringBytes / 4) / frameSize * frameSize);
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.trackName = trackName;
+        schedule();
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return source.getFrameLength();
+    }
+
+    /**
+     * Копирует готовые данные из кольца. Ждет, только если декодер отстал (кольцо пусто).
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length < frameSize) {
+            return 0;
+        }
+        boolean isStalled = false;
+        while (true) {
+            int n = copy(buffer, offset, length);
+            if (n != 0) {
+                return n;
+            }
+            if (!isStalled) {
+                isStalled = true;
+                stalled();
+            }
+            consumer = Thread.currentThread();
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    /**
+     * То же, что {@link #read(byte[], int, int)}, но не ждет декодер.
+     * @return количество скопированных байт, 0 - готовых данных пока нет, -1 - конец данных.
+     */
+    int poll(byte[] buffer, int offset, int length) throws IOException {
+        int n = copy(buffer, offset, length);
+        if (n == 0) {
+            stalled();
+        }
+        return n;
+    }
+
+    private int copy(byte[] buffer, int offset, int length) throws IOException {
+        int wanted = length / frameSize * frameSize;
+        long r = read;
+        long available = written - r;
+        if (available > 0 && wanted > 0) {
+            int total = (int) Math.min(wanted, available);
+            int pos = (int) (r % ring.length);
+            int first = Math.min(total, ring.length - pos);
+            System.arraycopy(ring, pos, buffer, offset, first);
+            if (first < total) {
+                System.arraycopy(ring, 0, buffer, offset + first, total - first);
+            }
+            read = r + total;
+            if (!isScheduled.get() && hasWork()) {
+                schedule();
+            }
+            return total;
+        }
+        if (isEnd && written == read) {
+            if (error != null) {
+                throw error;
+            }
+            return -1;
+        }
+        return isClosed ? -1 : 0;
+    }
+
+    /**
+     * Ждет первые данные (или конец источника), но не дольше {@code timeoutMs}.
+     * @return true, если данные готовы.
+     */
+    boolean awaitData(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        consumer = Thread.currentThread();
+        while (written == read && !isEnd && !isClosed) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(left, TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        return true;
+    }
+
+    /**
+     * Сбрасывает упреждение и переводит декодер на кадр {@code frame}. Ждет, пока поток декодера выполнит перемотку.
+     */
+    @Override
+    public void seek(long frame) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        consumer = Thread.currentThread();
+        seekFrame = Math.max(0, frame);
+        schedule();
+        while (seekFrame >= 0) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void stalled() {
+        if (metrics != null) {
+            metrics.readAheadStalled(trackName);
+        }
+    }
+
+    /**
+     * Источник закрывает задача упреждения (или сам вызов, если задача не выполняется), чтобы не закрыть его посреди чтения.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        schedule();
+    }
+
+    /**
+     * Ставит задачу упреждения в пул, если она еще не поставлена.
+     */
+    private void schedule() {
+        if (!isScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.readAhead(producer);
+        } catch (FoxPlayerException e) {
+            isScheduled.set(false);
+            if (error == null) {
+                error = new IOException(e.getMessage());
+            }
+            isEnd = true;
+            seekFrame = -1;
+            closeSource();
+            wakeConsumer();
+        }
+    }
+
+    private boolean hasWork() {
+        return isClosed || seekFrame >= 0 || !isEnd && ring.length - (int) (written - read) >= chunkBytes;
+    }
+
+    /**
+     * Заполняет кольцо (и выполняет перемотку), пока есть место, затем освобождает поток пула.
+     */
+    private void produce() {
+        try {
+            fill();
+        } catch (IOException e) {
+            error = e;
+            isEnd = true;
+        } catch (Exception e) {
+            error = new IOException(e);
+            isEnd = true;
+        }
+        if (isClosed || error != null) {
+            seekFrame = -1;
+            closeSource();
+        }
+        wakeConsumer();
+        isScheduled.set(false);
+        // чтение или перемотка могли прийти, пока задача завершалась:
+        if (!isSourceClosed.get() && hasWork()) {
+            schedule();
+        }
+    }
+
+    private void fill() throws IOException {
+        while (!isClosed) {
+            long seek = seekFrame;
+            if (seek >= 0) {
+                source.seek(seek);
+                // читатель ждет перемотку и кольцо не трогает:
+                written = read;
+                isEnd = false;
+                seekFrame = -1;
+                wakeConsumer();
+                continue;
+            }
+
+            long w = written;
+            int free = ring.length - (int) (w - read);
+            if (isEnd || free < chunkBytes) {
+                return;
+            }
+
+            int pos = (int) (w % ring.length);
+            int n = source.read(ring, pos, Math.min(Math.min(chunkBytes, free), ring.length - pos));
+            if (n == -1) {
+                isEnd = true;
+            } else {
+                written = w + n;
+            }
+            wakeConsumer();
+        }
+    }
+
+    private void closeSource() {
+        if (isSourceClosed.compareAndSet(false, true)) {
+            try {
+                source.close();
+            } catch (IOException ignore) {
+                // источник уже не нужен
+            }
+        }
+    }
+
+    private void wakeConsumer() {
+        Thread t = consumer;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+/**
+ * Потоковое приведение 16-битного PCM к формату вывода: линейная интерполяция частоты
+ * дискретизации и раскладка каналов (моно в N каналов, N каналов в моно, лишние каналы отбрасываются).
+ * При понижении частоты вход сначала проходит фильтр нижних частот (Баттерворт 4-го порядка на 0.45 выходной частоты),
+ * иначе частоты выше новой частоты Найквиста отражаются в слышимый диапазон.
+ * Работает на уже выделенных буферах, без аллокаций при чтении.
+ */
+class ResamplingPcmSource implements PcmSource {
+    private static final double CUTOFF = 0.45; // доля выходной частоты
+    private static final double[] BUTTERWORTH_Q = {0.54119610, 1.30656296}; // два звена 4-го порядка
+
+    private final PcmSource source;
+    private final AudioFormat outFormat;
+    private final int inChannels;
+    private final int outChannels;
+    private final double ratio; // входных кадров на один выходной
+
+    private final byte[] inBuf;
+    private int inPos = 0;
+    private int inLimit = 0;
+
+    private final float[] frameA;
+    private final float[] frameB;
+    private double t = 0d;
+    private boolean isPrimed = false;
+    private boolean isLast = false; // frameB - повтор последнего кадра источника
+    private boolean isEnded = false;
+
+    /**
+     * Коэффициенты звеньев фильтра (b0, b1, b2, a1, a2) или null без фильтра, состояние - по звену и каналу.
+     */
+    private final double[][] filter;
+    private final double[][] z1;
+    private final double[][] z2;
+    private boolean isFilterPrimed = false;
+
+    ResamplingPcmSource(PcmSource source, AudioFormat outFormat) {
+        AudioFormat inFormat = source.getFormat();
+        if (!PcmSource.isPcm16le(inFormat) || !PcmSource.isPcm16le(outFormat)) {
+            throw new FoxPlayerException(String.format("ResamplingPcmSource: Only 16 bit signed little-endian PCM is supported (%s -> %s).",
+                    inFormat, outFormat));
+        }
+        this.source = source;
+        this.outFormat = outFormat;
+        this.inChannels = inFormat.getChannels();
+        this.outChannels = outFormat.getChannels();
+        this.ratio = inFormat.getSampleRate() / outFormat.getSampleRate();
+        this.inBuf = new byte[4096 / inFormat.getFrameSize() * inFormat.getFrameSize()];
+        this.frameA = new float[inChannels];
+        this.frameB = new float[inChannels];
+        this.filter = ratio > 1d ? lowPass(outFormat.getSampleRate() * CUTOFF, inFormat.getSampleRate()) : null;
+        this.z1 = filter == null ? null : new double[filter.length][inChannels];
+        this.z2 = filter == null ? null : new double[filter.length][inChannels];
+    }
+
+    /**
+     * Звенья Баттерворта (RBJ biquad) для частоты среза {@code cutoff} при частоте дискретизации {@code rate}.
+     */
+    private static double[][] lowPass(double cutoff, double rate) {
+        double[][] sections = new double[BUTTERWORTH_Q.length][];
+        double w0 = 2d * Math.PI * cutoff / rate;
+        double cos = Math.cos(w0);
+        for (int i = 0; i < sections.length; i++) {
+            double alpha = Math.sin(w0) / (2d * BUTTERWORTH_Q[i]);
+            double a0 = 1d + alpha;
+            double b0 = (1d - cos) / 2d / a0;
+            sections[i] = new double[] {b0, 2d * b0, b0, -2d * cos / a0, (1d - alpha) / a0};
+        }
+        return sections;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return outFormat;
+    }
+
+    @Override
+    public long getFrameLength() {
+        long in = source.getFrameLength();
+        return in < 0 ? -1 : (long) (in / ratio);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!isPrimed) {
+            isPrimed = true;
+            isEnded = !nextFrame(frameA);
+            advanceB();
+        }
+        if (isEnded) {
+            return -1;
+        }
+
+        int frameSize = outChannels * 2;
+        int b = offset;
+        int end = offset + length / frameSize * frameSize;
+        while (b < end && !isEnded) {
+            float k = (float) t;
+            for (int c = 0; c < outChannels; c++, b += 2) {
+                int v = Math.round(mapChannel(frameA, c) + (mapChannel(frameB, c) - mapChannel(frameA, c)) * k);
+                v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+                buffer[b] = (byte) v;
+                buffer[b + 1] = (byte) (v >> 8);
+            }
+
+            t += ratio;
+            while (t >= 1d) {
+                t -= 1d;
+                if (isLast) {
+                    isEnded = true; // последний кадр источника уже выведен
+                    break;
+                }
+                System.arraycopy(frameB, 0, frameA, 0, inChannels);
+                advanceB();
+            }
+        }
+        return b - offset;
+    }
+
+    /**
+     * Читает следующий кадр в frameB, в конце источника повторяет в нем frameA, чтобы последний кадр тоже прозвучал.
+     */
+    private void advanceB() throws IOException {
+        if (!nextFrame(frameB)) {
+            System.arraycopy(frameA, 0, frameB, 0, inChannels);
+            isLast = true;
+        }
+    }
+
+    private float mapChannel(float[] frame, int outChannel) {
+        if (inChannels == outChannels) {
+            return frame[outChannel];
+        } else if (inChannels == 1) {
+            return frame[0];
+        } else if (outChannels == 1) {
+            float sum = 0f;
+            for (float s : frame) {
+                sum += s;
+            }
+            return sum / inChannels;
+        }
+        return outChannel < inChannels ? frame[outChannel] : frame[outChannel % inChannels];
+    }
+
+    private boolean nextFrame(float[] frame) throws IOException {
+        if (inPos >= inLimit) {
+            int n;
+            do {
+                n = source.read(inBuf, 0, inBuf.length);
+            } while (n == 0);
+            if (n == -1) {
+                return false;
+            }
+            inPos = 0;
+            inLimit = n;
+        }
+        for (int c = 0; c < inChannels; c++, inPos += 2) {
+            frame[c] = (short) ((inBuf[inPos] & 0xFF) | (inBuf[inPos + 1] << 8));
+        }
+        if (filter != null) {
+            filter(frame);
+        }
+        return true;
+    }
+
+    /**
+     * Пропускает кадр через звенья фильтра (транспонированная прямая форма II).
+     * Первый кадр задает установившееся состояние, чтобы постоянная составляющая не давала выброса в начале.
+     */
+    private void filter(float[] frame) {
+        for (int s = 0; s < filter.length; s++) {
+            double[] k = filter[s];
+            double[] z1s = z1[s];
+            double[] z2s = z2[s];
+            for (int c = 0; c < inChannels; c++) {
+                double x = frame[c];
+                if (!isFilterPrimed) {
+                    z2s[c] = x * (k[2] - k[4]);
+                    z1s[c] = x * (k[1] - k[3]) + z2s[c];
+                }
+                double y = k[0] * x + z1s[c];
+                z1s[c] = k[1] * x - k[3] * y + z2s[c];
+                z2s[c] = k[2] * x - k[4] * y;
+                frame[c] = (float) y;
+            }
+        }
+        isFilterPrimed = true;
+    }
+
+    @Override
+    public void seek(long frame) throws IOException {
+        source.seek((long) (frame * ratio));
+        inPos = inLimit = 0;
+        t = 0d;
+        isPrimed = false;
+        isLast = false;
+        isEnded = false;
+        isFilterPrimed = false;
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return source.isInMemory();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
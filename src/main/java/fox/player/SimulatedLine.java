@@ -0,0 +1,405 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.BooleanControl;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.SourceDataLine;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Виртуальная линия вывода {@link SimulatedMixerProvider}. Буфер линии "проигрывается" по часам {@link System#nanoTime()}
+ * со скоростью формата, умноженной на {@code speed}, поэтому запись блокируется так же, как на настоящем устройстве.
+ * При скорости 0 данные проигрываются мгновенно, а последний записанный блок считается еще не сыгранным,
+ * чтобы проверка опустошения буфера по {@link #available()} не срабатывала на каждой записи.
+ * Записанные данные сохраняются как есть, MUTE и MASTER_GAIN только хранят значения.
+ */
+public class SimulatedLine implements SourceDataLine {
+    private static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final double speed;
+    private final int recordLimit;
+    private final List<SimulatedLine> openLines;
+    private final List<LineListener> listeners = new CopyOnWriteArrayList<>();
+    private final FloatControl masterGain = new FloatControl(FloatControl.Type.MASTER_GAIN, -80f, 6f, 0.01f, -1, 0f, "dB") {};
+    private final BooleanControl mute = new BooleanControl(BooleanControl.Type.MUTE, false) {};
+
+    // состояние ниже защищено монитором линии:
+    private AudioFormat format;
+    private int frameSize;
+    private int bufferSize;
+    private double bytesPerNano;
+    private boolean isOpen = false;
+    private boolean isRunning = false;
+    private int generation = 0;
+    private int queued = 0;
+    private long consumed = 0;
+    private long written = 0;
+    private double credit = 0;
+    private long lastUpdate;
+    private boolean isStarved = false;
+    private long underruns = 0;
+    private int writers = 0;
+    private boolean isLate = false;
+    private byte[] recorded = new byte[0];
+    private int recordedLength = 0;
+
+    SimulatedLine(AudioFormat format, double speed, int recordLimit, List<SimulatedLine> openLines) {
+        this.format = format;
+        this.speed = speed;
+        this.recordLimit = recordLimit;
+        this.openLines = openLines;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferSize) {
+        synchronized (this) {
+            this.format = format;
+            this.frameSize = Math.max(1, format.getFrameSize());
+            int size = bufferSize > 0 ? bufferSize : (int) (format.getFrameRate() / 2) * frameSize;
+            this.bufferSize = Math.max(frameSize, size / frameSize * frameSize);
+            this.bytesPerNano = format.getFrameRate() * frameSize * speed / TimeUnit.SECONDS.toNanos(1);
+            this.lastUpdate = System.nanoTime();
+            if (isOpen) {
+                return;
+            }
+            isOpen = true;
+        }
+        openLines.add(this);
+        fire(LineEvent.Type.OPEN);
+    }
+
+    @Override
+    public void open(AudioFormat format) {
+        open(format, AudioSystem.NOT_SPECIFIED);
+    }
+
+    @Override
+    public void open() {
+        open(format);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!isOpen) {
+                return;
+            }
+            isOpen = false;
+            isRunning = false;
+            queued = 0;
+            generation++;
+        }
+        openLines.remove(this);
+        fire(LineEvent.Type.CLOSE);
+    }
+
+    /**
+     * Блокируется, пока в буфере нет места, как настоящая линия. Возвращается раньше при {@link #flush()}, {@link #stop()} или закрытии.
+     */
+    @Override
+    public int write(byte[] b, int off, int len) {
+        if (len % Math.max(1, format.getFrameSize()) != 0) {
+            throw new IllegalArgumentException("SimulatedLine: The length " + len + " is not an integral number of frames.");
+        }
+        int startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+            writers++;
+        }
+        try {
+            return write(b, off, len, startGeneration);
+        } finally {
+            synchronized (this) {
+                if (--writers == 0) {
+                    isLate = false;
+                }
+            }
+        }
+    }
+
+    private int write(byte[] b, int off, int len, int startGeneration) {
+        int done = 0;
+        while (done < len) {
+            long waitNanos;
+            synchronized (this) {
+                if (!isOpen || generation != startGeneration) {
+                    break;
+                }
+                update(System.nanoTime());
+                if (isLate) {
+                    // поток записи "опоздал": остаток блока успевает сыграть, и линия снова пуста
+                    accept(b, off + done, len - done);
+                    consumed += queued + len - done;
+                    queued = 0;
+                    isStarved = true; // то же опустошение, что и при injectUnderrun
+                    done = len;
+                    break;
+                }
+                if (speed == 0) {
+                    // мгновенное проигрывание: всё, кроме последнего блока, уже сыграно
+                    consumed += queued;
+                    int rest = len - done;
+                    queued = Math.min(rest, bufferSize);
+                    consumed += rest - queued;
+                    accept(b, off + done, rest);
+                    done = len;
+                    break;
+                }
+                int space = bufferSize - queued;
+                if (space >= frameSize) {
+                    int n = Math.min(space, len - done) / frameSize * frameSize;
+                    accept(b, off + done, n);
+                    queued += n;
+                    done += n;
+                    continue;
+                }
+                int need = Math.min(len - done, Math.max(frameSize, bufferSize / 4));
+                waitNanos = isRunning ? (long) ((need - credit) / bytesPerNano) : MAX_WAIT_NANOS;
+            }
+            LockSupport.parkNanos(this, Math.max(MIN_WAIT_NANOS, Math.min(MAX_WAIT_NANOS, waitNanos)));
+        }
+        return done;
+    }
+
+    @Override
+    public void drain() {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                update(System.nanoTime());
+                if (!isRunning || queued == 0) {
+                    return;
+                }
+                if (speed == 0) {
+                    consumed += queued;
+                    queued = 0;
+                    return;
+                }
+                waitNanos = (long) ((queued - credit) / bytesPerNano);
+            }
+            LockSupport.parkNanos(this, Math.max(MIN_WAIT_NANOS, Math.min(MAX_WAIT_NANOS, waitNanos)));
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        update(System.nanoTime());
+        queued = 0;
+        credit = 0;
+        generation++;
+    }
+
+    @Override
+    public void start() {
+        synchronized (this) {
+            if (isRunning || !isOpen) {
+                return;
+            }
+            update(System.nanoTime());
+            isRunning = true;
+        }
+        fire(LineEvent.Type.START);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (!isRunning) {
+                return;
+            }
+            update(System.nanoTime());
+            isRunning = false;
+            generation++;
+        }
+        fire(LineEvent.Type.STOP);
+    }
+
+    /**
+     * Мгновенно "проигрывает" всё, что было в буфере, и остаток текущей записи, как если бы поток записи опоздал:
+     * после возврата из {@link #write(byte[], int, int)} он увидит пустой буфер.
+     */
+    public synchronized void injectUnderrun() {
+        update(System.nanoTime());
+        consumed += queued;
+        queued = 0;
+        credit = 0;
+        isLate = writers > 0;
+        if (isRunning && !isStarved) {
+            isStarved = true;
+            underruns++;
+        }
+    }
+
+    /**
+     * @return сколько раз буфер опустел во время воспроизведения (включая {@link #injectUnderrun()}).
+     */
+    public synchronized long getUnderruns() {
+        update(System.nanoTime());
+        return underruns;
+    }
+
+    /**
+     * @return сколько байт принято линией с момента создания.
+     */
+    public synchronized long getWrittenBytes() {
+        return written;
+    }
+
+    /**
+     * @return копия записанных данных (не больше {@link SimulatedMixerProvider#getRecordBytes()} на момент создания линии).
+     */
+    public synchronized byte[] getRecorded() {
+        return Arrays.copyOf(recorded, recordedLength);
+    }
+
+    public synchronized void clearRecorded() {
+        recorded = new byte[0];
+        recordedLength = 0;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return isRunning;
+    }
+
+    @Override
+    public synchronized boolean isActive() {
+        update(System.nanoTime());
+        return isRunning && queued > 0;
+    }
+
+    @Override
+    public synchronized AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public synchronized int available() {
+        update(System.nanoTime());
+        return bufferSize - queued;
+    }
+
+    @Override
+    public int getFramePosition() {
+        return (int) getLongFramePosition();
+    }
+
+    @Override
+    public synchronized long getLongFramePosition() {
+        update(System.nanoTime());
+        return consumed / Math.max(1, frameSize);
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        return (long) (getLongFramePosition() * 1_000_000d / format.getFrameRate());
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    @Override
+    public synchronized Line.Info getLineInfo() {
+        return new DataLine.Info(SourceDataLine.class, format, bufferSize);
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public Control[] getControls() {
+        return new Control[] {masterGain, mute};
+    }
+
+    @Override
+    public boolean isControlSupported(Control.Type control) {
+        return FloatControl.Type.MASTER_GAIN.equals(control) || BooleanControl.Type.MUTE.equals(control);
+    }
+
+    @Override
+    public Control getControl(Control.Type control) {
+        if (FloatControl.Type.MASTER_GAIN.equals(control)) {
+            return masterGain;
+        }
+        if (BooleanControl.Type.MUTE.equals(control)) {
+            return mute;
+        }
+        throw new IllegalArgumentException("SimulatedLine: Unsupported control " + control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Продвигает часы линии: за прошедшее время из буфера уходит целое число кадров.
+     */
+    private void update(long now) {
+        if (!isRunning || speed == 0) {
+            lastUpdate = now;
+            return;
+        }
+        credit += (now - lastUpdate) * bytesPerNano;
+        lastUpdate = now;
+        int n = (int) Math.min(queued, (long) (credit / frameSize) * frameSize);
+        queued -= n;
+        consumed += n;
+        credit -= n;
+        if (queued == 0) {
+            credit = 0; // пустое устройство не копит время впрок
+            if (written > 0 && !isStarved) {
+                isStarved = true;
+                underruns++;
+            }
+        }
+    }
+
+    private void accept(byte[] b, int off, int len) {
+        written += len;
+        isStarved = false;
+        int toRecord = Math.min(len, recordLimit - recordedLength);
+        if (toRecord > 0) {
+            if (recorded.length < recordedLength + toRecord) {
+                recorded = Arrays.copyOf(recorded, Math.min(recordLimit, Math.max(recordedLength + toRecord, recorded.length * 2)));
+            }
+            System.arraycopy(b, off, recorded, recordedLength, toRecord);
+            recordedLength += toRecord;
+        }
+    }
+
+    private void fire(LineEvent.Type type) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        LineEvent event = new LineEvent(this, type, getLongFramePosition());
+        for (LineListener listener : listeners) {
+            listener.update(event);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package fox.player;
+
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.spi.MixerProvider;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Виртуальное звуковое устройство для тестов и бенчмарков на машинах без звуковой карты.
+ * Линии {@link SimulatedLine} потребляют PCM со скоростью реального устройства (или ускоренно), поддерживают MUTE и MASTER_GAIN,
+ * могут записывать выведенные данные и опустошать буфер по запросу.
+ * <p>
+ * Устройство включается только настройкой Java Sound, чтобы на машине со звуковой картой звук не уходил в него случайно:
+ * {@code -Djavax.sound.sampled.SourceDataLine=} {@link #DEFAULT_LINE} или {@link #install()}. Дополнительные настройки:
+ * {@code -Dfox.player.sim.speed} - скорость потребления (1 - реальное время, 10 - в десять раз быстрее, 0 - мгновенно)
+ * и {@code -Dfox.player.sim.recordBytes} - сколько байт записывать с каждой линии (0 - не записывать).
+ */
+public class SimulatedMixerProvider extends MixerProvider {
+    public static final String MIXER_NAME = "FoxGames simulated mixer";
+    public static final String DEFAULT_LINE = "fox.player.SimulatedMixerProvider#" + MIXER_NAME;
+    public static final String SPEED_PROPERTY = "fox.player.sim.speed";
+    public static final String RECORD_PROPERTY = "fox.player.sim.recordBytes";
+
+    private static final String LINE_PROPERTY = SourceDataLine.class.getName();
+    private static final Mixer.Info INFO = new Mixer.Info(MIXER_NAME, "FoxLib39", "Simulated output device", "1.0") {};
+    private static final SimulatedMixer MIXER = new SimulatedMixer();
+
+    private static volatile double speed = Double.parseDouble(System.getProperty(SPEED_PROPERTY, "1"));
+    private static volatile int recordBytes = Integer.getInteger(RECORD_PROPERTY, 0);
+
+    /**
+     * Делает виртуальное устройство устройством вывода по умолчанию для всего процесса.
+     */
+    public static void install() {
+        System.setProperty(LINE_PROPERTY, DEFAULT_LINE);
+    }
+
+    /**
+     * Возвращает выбор устройства вывода системе, если он был сделан через {@link #install()}.
+     */
+    public static void uninstall() {
+        if (DEFAULT_LINE.equals(System.getProperty(LINE_PROPERTY))) {
+            System.clearProperty(LINE_PROPERTY);
+        }
+    }
+
+    /**
+     * @return true, если настройка Java Sound выбирает это устройство.
+     */
+    public static boolean isEnabled() {
+        String line = System.getProperty(LINE_PROPERTY);
+        return line != null && line.startsWith(SimulatedMixerProvider.class.getName());
+    }
+
+    public static double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed скорость потребления данных для новых линий: 1 - реальное время, больше 1 - ускоренно, 0 - мгновенно.
+     */
+    public static void setSpeed(double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new FoxPlayerException("SimulatedMixerProvider: Wrong speed " + speed);
+        }
+        SimulatedMixerProvider.speed = speed;
+    }
+
+    public static int getRecordBytes() {
+        return recordBytes;
+    }
+
+    /**
+     * @param recordBytes сколько первых байт сохранять с каждой новой линии (0 - не записывать).
+     */
+    public static void setRecordBytes(int recordBytes) {
+        SimulatedMixerProvider.recordBytes = Math.max(0, recordBytes);
+    }
+
+    /**
+     * @return открытые сейчас линии устройства.
+     */
+    public static List<SimulatedLine> getLines() {
+        return List.copyOf(MIXER.lines);
+    }
+
+    /**
+     * Опустошает буферы всех открытых линий, как при задержке потока записи.
+     */
+    public static void injectUnderruns() {
+        for (SimulatedLine line : MIXER.lines) {
+            line.injectUnderrun();
+        }
+    }
+
+    @Override
+    public Mixer.Info[] getMixerInfo() {
+        return isEnabled() ? new Mixer.Info[] {INFO} : new Mixer.Info[0];
+    }
+
+    @Override
+    public Mixer getMixer(Mixer.Info info) {
+        if (info == null || INFO.equals(info)) {
+            return MIXER;
+        }
+        throw new IllegalArgumentException("SimulatedMixerProvider: Unknown mixer " + info);
+    }
+
+    private static class SimulatedMixer implements Mixer {
+        private static final DataLine.Info SOURCE_INFO = new DataLine.Info(SourceDataLine.class,
+                new AudioFormat[] {new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, AudioSystem.NOT_SPECIFIED, 16,
+                        AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, false)},
+                AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED);
+
+        private final List<SimulatedLine> lines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Info getMixerInfo() {
+            return INFO;
+        }
+
+        @Override
+        public Line.Info[] getSourceLineInfo() {
+            return new Line.Info[] {SOURCE_INFO};
+        }
+
+        @Override
+        public Line.Info[] getTargetLineInfo() {
+            return new Line.Info[0];
+        }
+
+        @Override
+        public Line.Info[] getSourceLineInfo(Line.Info info) {
+            return isLineSupported(info) ? getSourceLineInfo() : new Line.Info[0];
+        }
+
+        @Override
+        public Line.Info[] getTargetLineInfo(Line.Info info) {
+            return new Line.Info[0];
+        }
+
+        @Override
+        public boolean isLineSupported(Line.Info info) {
+            return isEnabled() && info.matches(SOURCE_INFO);
+        }
+
+        @Override
+        public Line getLine(@NonNull Line.Info info) {
+            if (!isLineSupported(info)) {
+                throw new IllegalArgumentException("SimulatedMixer: Unsupported line " + info);
+            }
+            AudioFormat[] formats = info instanceof DataLine.Info ? ((DataLine.Info) info).getFormats() : new AudioFormat[0];
+            return new SimulatedLine(formats.length > 0 ? formats[0] : SoftMixer.DEFAULT_FORMAT, speed, recordBytes, lines);
+        }
+
+        @Override
+        public int getMaxLines(Line.Info info) {
+            return isLineSupported(info) ? AudioSystem.NOT_SPECIFIED : 0;
+        }
+
+        @Override
+        public Line[] getSourceLines() {
+            return lines.toArray(new Line[0]);
+        }
+
+        @Override
+        public Line[] getTargetLines() {
+            return new Line[0];
+        }
+
+        @Override
+        public void synchronize(Line[] lines, boolean maintainSync) {
+            throw new IllegalArgumentException("SimulatedMixer: Synchronization is not supported.");
+        }
+
+        @Override
+        public void unsynchronize(Line[] lines) {
+            throw new IllegalArgumentException("SimulatedMixer: Synchronization is not supported.");
+        }
+
+        @Override
+        public boolean isSynchronizationSupported(Line[] lines, boolean maintainSync) {
+            return false;
+        }
+
+        @Override
+        public Line.Info getLineInfo() {
+            return new Line.Info(Mixer.class);
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public Control[] getControls() {
+            return new Control[0];
+        }
+
+        @Override
+        public boolean isControlSupported(Control.Type control) {
+            return false;
+        }
+
+        @Override
+        public Control getControl(Control.Type control) {
+            throw new IllegalArgumentException("SimulatedMixer: Unsupported control " + control);
+        }
+
+        @Override
+        public void addLineListener(LineListener listener) {
+        }
+
+        @Override
+        public void removeLineListener(LineListener listener) {
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.SourceDataLine;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static fox.Out.Print;
+
+/**
+ * Программный микшер: один поток, одна линия вывода и не более {@code polyphony} одновременно звучащих голосов,
+ * которые каждый блок суммируются в общий буфер. Голоса открываются и декодируются в небольшом пуле микшера
+ * ({@code <name>-mixer-voice-N}, {@code <name>-mixer-readahead-N}), поток сведения только копирует и суммирует PCM.
+ */
+public class SoftMixer implements Runnable {
+    public static final AudioFormat DEFAULT_FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+    private static final int LOADER_WORKERS = 2;
+    private static final long LOADER_SHUTDOWN_MS = 500;
+
+    @Getter
+    private final String name;
+    @Getter
+    private final AudioFormat format;
+    @Getter
+    private final int polyphony;
+    @Getter
+    private final int blockFrames;
+
+    /**
+     * Метрики самого микшера (опустошения линии), метрики голосов пишутся в плееры, которые их запустили.
+     */
+    @Getter
+    private final PlayerMetrics metrics;
+
+    private final MixerVoice[] voices;
+    private final Queue<MixerVoice> pending = new ConcurrentLinkedQueue<>();
+    private final PlayerScheduler loader;
+    private final Object startLock = new Object();
+
+    private volatile Thread mixThread;
+    private volatile boolean isClosed = false;
+    /**
+     * Поток микшера завершился (закрытие или ошибка линии): новые голоса не принимаются.
+     */
+    private volatile boolean isStopped = false;
+    private volatile int activeVoices = 0;
+    private volatile Exception ex;
+
+    public SoftMixer(@NonNull String name, int polyphony) {
+        this(name, DEFAULT_FORMAT, polyphony, 512);
+    }
+
+    /**
+     * @param format формат выхода: 16 бит, signed, little-endian, моно или стерео.
+     * @param polyphony максимальное число одновременно звучащих голосов.
+     * @param blockFrames размер блока сведения в кадрах.
+     */
+    public SoftMixer(@NonNull String name, @NonNull AudioFormat format, int polyphony, int blockFrames) {
+        if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) || format.getSampleSizeInBits() != 16
+                || format.isBigEndian() || format.getChannels() < 1 || format.getChannels() > 2) {
+            throw new FoxPlayerException("SoftMixer: Unsupported output format " + format);
+        }
+        if (polyphony < 1 || blockFrames < 1) {
+            throw new FoxPlayerException(String.format("SoftMixer: Wrong polyphony (%d) or block size (%d).", polyphony, blockFrames));
+        }
+        this.name = name;
+        this.format = format;
+        this.polyphony = polyphony;
+        this.blockFrames = blockFrames;
+        this.voices = new MixerVoice[polyphony];
+        this.metrics = new PlayerMetrics(name + "-mixer");
+        this.loader = new PlayerScheduler(name + "-mixer", LOADER_WORKERS);
+    }
+
+    /**
+     * @param sourceOpener открывает источник PCM (вызывается в потоке микшера).
+     * @param volume громкость (gain в dB).
+     * @param fadeInMs длительность нарастания громкости при старте.
+     */
+    public MixerVoice play(@NonNull String trackName, @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs) {
+        return play(trackName, sourceOpener, volume, fadeInMs, metrics, System.nanoTime());
+    }
+
+    /**
+     * @param metrics метрики, в которые голос пишет задержку старта, время декодирования и ошибки.
+     * @param requestedAt момент запроса воспроизведения по {@link System#nanoTime()}.
+     */
+    public MixerVoice play(@NonNull String trackName, @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs,
+                           @NonNull PlayerMetrics metrics, long requestedAt) {
+        return play(trackName, sourceOpener, volume, fadeInMs, metrics, requestedAt, null);
+    }
+
+    /**
+     * @param listener получает завершение голоса или его ошибку (в потоке микшера), может быть null.
+     */
+    public MixerVoice play(@NonNull String trackName, @NonNull Callable<PcmSource> sourceOpener, float volume, int fadeInMs,
+                           @NonNull PlayerMetrics metrics, long requestedAt, VoiceListener listener) {
+        return submit(new MixerVoice(trackName, sourceOpener, volume, fadeInMs, metrics, requestedAt, listener));
+    }
+
+    private MixerVoice submit(MixerVoice voice) {
+        checkAlive();
+        ensureStarted();
+        loader.submit(() -> prepare(voice));
+        return voice;
+    }
+
+    /**
+     * Открывает источник голоса в пуле микшера и только готовый голос передает потоку сведения.
+     */
+    private void prepare(MixerVoice voice) {
+        try {
+            voice.prepare(format, loader);
+        } catch (Exception e) {
+            voice.fail(e);
+            return;
+        }
+        pending.add(voice);
+        LockSupport.unpark(mixThread);
+        if (isStopped) {
+            // поток микшера завершился, пока голос готовился:
+            failPending();
+        }
+    }
+
+    private void checkAlive() {
+        Exception crash = ex;
+        if (crash != null) {
+            throw new FoxPlayerException("SoftMixer: The mixer '" + name + "' was crashed: " + crash.getMessage());
+        }
+        if (isClosed || isStopped) {
+            throw new FoxPlayerException("SoftMixer: The mixer '" + name + "' is closed.");
+        }
+    }
+
+    private void ensureStarted() {
+        if (mixThread == null) {
+            synchronized (startLock) {
+                if (mixThread == null) {
+                    Thread t = new Thread(this, name + "-mixer");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MAX_PRIORITY);
+                    mixThread = t;
+                    t.start();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return число голосов, сведенных в последнем блоке.
+     */
+    public int getActiveVoices() {
+        return activeVoices;
+    }
+
+    public Throwable getException() {
+        return ex;
+    }
+
+    public void close() {
+        isClosed = true;
+        Thread t = mixThread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        int channels = format.getChannels();
+        float[] acc = new float[blockFrames * channels];
+        byte[] out = new byte[acc.length * 2];
+
+        SourceDataLine line = null;
+        try {
+            line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+            line.open(format, Math.max(out.length * 4, 4096));
+            line.start();
+
+            boolean isWriting = false;
+            while (!isClosed) {
+                int active = acceptPending();
+                if (active == 0) {
+                    activeVoices = 0;
+                    isWriting = false;
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    continue;
+                }
+
+                Arrays.fill(acc, 0f);
+                active = 0;
+                for (int i = 0; i < voices.length; i++) {
+                    MixerVoice voice = voices[i];
+                    if (voice == null) {
+                        continue;
+                    }
+                    voice.mixInto(acc, blockFrames, format);
+                    if (voice.isFinished()) {
+                        voices[i] = null;
+                    }
+                    active++;
+                }
+                activeVoices = active;
+
+                PcmKernels.toPcm16(acc, 0, out, 0, acc.length);
+                if (isWriting && line.available() >= line.getBufferSize()) {
+                    metrics.underrun(name);
+                }
+                line.write(out, 0, out.length);
+                metrics.streamed(out.length);
+                isWriting = true;
+            }
+        } catch (Exception e) {
+            ex = e;
+            metrics.error(name, e);
+            Print(getClass(), LEVEL.INFO, "SoftMixer '" + name + "' was crashed: " + e.getMessage());
+        } finally {
+            isStopped = true;
+            if (line != null) {
+                line.stop();
+                line.close();
+            }
+            for (int i = 0; i < voices.length; i++) {
+                if (voices[i] != null) {
+                    stopVoice(voices[i]);
+                    voices[i] = null;
+                }
+            }
+            failPending();
+            activeVoices = 0;
+            loader.shutdown(LOADER_SHUTDOWN_MS);
+        }
+    }
+
+    /**
+     * Завершает голоса, так и не попавшие в слоты: после закрытия - как доигравшие, после ошибки микшера - с ошибкой.
+     */
+    private void failPending() {
+        MixerVoice rest;
+        while ((rest = pending.poll()) != null) {
+            stopVoice(rest);
+        }
+    }
+
+    private void stopVoice(MixerVoice voice) {
+        Exception crash = ex;
+        if (crash != null) {
+            voice.fail(new FoxPlayerException("SoftMixer: The mixer '" + name + "' was crashed: " + crash.getMessage()));
+        } else {
+            voice.finish();
+        }
+    }
+
+    /**
+     * Раскладывает новые голоса по свободным слотам.
+     * @return число занятых слотов.
+     */
+    private int acceptPending() {
+        MixerVoice voice;
+        while ((voice = pending.poll()) != null) {
+            int slot = freeSlot();
+            if (slot == -1) {
+                voice.fail(new FoxPlayerException(String.format("SoftMixer: The voice '%s' was dropped: polyphony limit (%d) reached.",
+                        voice.getTrackName(), polyphony)));
+                continue;
+            }
+            voices[slot] = voice;
+        }
+
+        int busy = 0;
+        for (MixerVoice v : voices) {
+            if (v != null) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+
+    private int freeSlot() {
+        for (int i = 0; i < voices.length; i++) {
+            if (voices[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,110 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Банк звуков: один файл с заголовком-индексом и склеенными PCM-данными треков (см. {@link SoundBankPacker}).
+ * Файл целиком отображается в память, треки играют прямо из срезов {@link MappedByteBuffer}
+ * без открытия файлов и копирования в кучу.
+ * <p>
+ * Формат (big-endian): int MAGIC, int VERSION, int count, затем count записей
+ * {int nameLength, byte[nameLength] name (UTF-8), long offset, long length, float sampleRate, int channels},
+ * затем данные. Все треки - 16 бит signed little-endian PCM.
+ */
+public class SoundBank {
+    static final int MAGIC = 0x464F5842; // "FOXB"
+    static final int VERSION = 1;
+    private static final int MIN_ENTRY_SIZE = 4 + 8 + 8 + 4 + 4; // запись с пустым именем
+
+    @Getter
+    private final Path path;
+    private final Map<String, PcmTrack> tracks;
+
+    private SoundBank(Path path, Map<String, PcmTrack> tracks) {
+        this.path = path;
+        this.tracks = tracks;
+    }
+
+    /**
+     * Отображает банк в память и читает его индекс. Данные треков при этом не читаются.
+     */
+    public static SoundBank open(@NonNull Path bankFile) {
+        try (FileChannel channel = FileChannel.open(bankFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new FoxPlayerException(String.format("SoundBank: The bank %s is bigger than 2 GB.", bankFile));
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer header = mapped.duplicate().order(ByteOrder.BIG_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new FoxPlayerException(String.format("SoundBank: The file %s is not a sound bank.", bankFile));
+            }
+
+            int count = header.getInt();
+            if (count < 0 || (long) count * MIN_ENTRY_SIZE > header.remaining()) {
+                throw damaged(bankFile, "wrong tracks count " + count);
+            }
+            Map<String, PcmTrack> tracks = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int nameLength = header.getInt();
+                if (nameLength < 0 || nameLength > header.remaining()) {
+                    throw damaged(bankFile, "wrong name length " + nameLength);
+                }
+                byte[] name = new byte[nameLength];
+                header.get(name);
+                long offset = header.getLong();
+                long length = header.getLong();
+                float sampleRate = header.getFloat();
+                int channels = header.getInt();
+                if (channels < 1 || !(sampleRate > 0) || Float.isInfinite(sampleRate)) {
+                    throw damaged(bankFile, String.format("wrong format of the track %d: %s Hz, %d channels", i, sampleRate, channels));
+                }
+                if (offset < 0 || length < 0 || offset > mapped.capacity() - length) {
+                    throw damaged(bankFile, String.format("the track %d (%d + %d bytes) is out of the file", i, offset, length));
+                }
+
+                String trackName = new String(name, StandardCharsets.UTF_8);
+                ByteBuffer slice = mapped.duplicate().position((int) offset).limit((int) (offset + length)).slice();
+                tracks.put(trackName, new PcmTrack(trackName, new AudioFormat(sampleRate, 16, channels, true, false), slice));
+            }
+            return new SoundBank(bankFile, Collections.unmodifiableMap(tracks));
+        } catch (IOException | BufferUnderflowException e) {
+            throw new FoxPlayerException(String.format("SoundBank: The bank %s can not be opened: %s", bankFile, e.getMessage()));
+        }
+    }
+
+    private static FoxPlayerException damaged(Path bankFile, String reason) {
+        return new FoxPlayerException(String.format("SoundBank: The bank %s is damaged: %s.", bankFile, reason));
+    }
+
+    public PcmTrack get(@NonNull String trackName) {
+        return tracks.get(trackName);
+    }
+
+    public boolean contains(@NonNull String trackName) {
+        return tracks.containsKey(trackName);
+    }
+
+    public Set<String> getTrackNames() {
+        return tracks.keySet();
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+}
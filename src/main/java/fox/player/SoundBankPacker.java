@@ -0,0 +1,135 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static fox.Out.Print;
+
+/**
+ * Сборка банка звуков {@link SoundBank} из каталога с аудио-файлами.
+ * <p>
+ * Запуск из командной строки: {@code SoundBankPacker <каталог> <файл банка> [частота каналы]}.
+ */
+public class SoundBankPacker {
+
+    private SoundBankPacker() {}
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 4) {
+            System.out.println("Usage: SoundBankPacker <audioDirectory> <bankFile> [sampleRate channels]");
+            return;
+        }
+        AudioFormat target = args.length == 4
+                ? new AudioFormat(Float.parseFloat(args[2]), 16, Integer.parseInt(args[3]), true, false)
+                : null;
+        int count = pack(Paths.get(args[0]), Paths.get(args[1]), target);
+        System.out.println("Packed " + count + " tracks into " + args[1]);
+    }
+
+    /**
+     * Декодирует все треки каталога (рекурсивно, имена как в {@link TrackLibrary}) и пишет их в один банк.
+     * @param targetFormat формат, к которому приводятся все треки, или null - оставить частоту и каналы каждого файла.
+     * @return число треков в банке.
+     */
+    public static int pack(@NonNull Path audioDirectory, @NonNull Path bankFile, AudioFormat targetFormat) {
+        PlayerScheduler scheduler = new PlayerScheduler("SoundBankPacker", 1);
+        TrackLibrary library = new TrackLibrary(scheduler);
+        library.setIndexPath(bankFile.resolveSibling(bankFile.getFileName() + TrackLibrary.INDEX_EXTENSION));
+        try {
+            library.scan(audioDirectory);
+        } finally {
+            scheduler.shutdown(1000);
+        }
+
+        List<TrackInfo> infos = new ArrayList<>(library.getTracks());
+        infos.sort(Comparator.comparing(TrackInfo::getName));
+
+        Path data = bankFile.resolveSibling(bankFile.getFileName() + ".data");
+        List<Entry> entries = new ArrayList<>(infos.size());
+        try {
+            // сначала PCM во временный файл, чтобы узнать смещения, затем заголовок и данные в банк:
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(data))) {
+                byte[] buffer = new byte[8192];
+                long offset = 0;
+                for (TrackInfo info : infos) {
+                    long length = 0;
+                    try (PcmSource source = PcmSource.convert(PcmSource.open(info.getFile()), targetFormat)) {
+                        int n;
+                        while ((n = source.read(buffer, 0, buffer.length / source.getFormat().getFrameSize() * source.getFormat().getFrameSize())) != -1) {
+                            out.write(buffer, 0, n);
+                            length += n;
+                        }
+                        entries.add(new Entry(info.getName(), offset, length, source.getFormat()));
+                    } catch (Exception e) {
+                        Print(SoundBankPacker.class, LEVEL.INFO, "SoundBankPacker: The track '" + info.getName() + "' was skipped: " + e.getMessage());
+                    }
+                    // данные пропущенного трека уже могли попасть в файл - следующий трек начинается после них:
+                    offset += length;
+                }
+            }
+
+            long headerSize = 12;
+            for (Entry entry : entries) {
+                headerSize += 4 + entry.name.length + 8 + 8 + 4 + 4;
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bankFile)))) {
+                out.writeInt(SoundBank.MAGIC);
+                out.writeInt(SoundBank.VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeInt(entry.name.length);
+                    out.write(entry.name);
+                    out.writeLong(headerSize + entry.offset);
+                    out.writeLong(entry.length);
+                    out.writeFloat(entry.format.getSampleRate());
+                    out.writeInt(entry.format.getChannels());
+                }
+            }
+            try (FileChannel src = FileChannel.open(data, StandardOpenOption.READ);
+                 FileChannel dst = FileChannel.open(bankFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long position = 0;
+                while (position < src.size()) {
+                    position += src.transferTo(position, src.size() - position, dst);
+                }
+            }
+        } catch (IOException e) {
+            throw new FoxPlayerException(String.format("SoundBankPacker: The bank %s can not be written: %s", bankFile, e.getMessage()));
+        } finally {
+            try {
+                Files.deleteIfExists(data);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final long offset;
+        private final long length;
+        private final AudioFormat format;
+
+        Entry(String name, long offset, long length, AudioFormat format) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.offset = offset;
+            this.length = length;
+            this.format = format;
+        }
+    }
+}
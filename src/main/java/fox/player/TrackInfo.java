@@ -0,0 +1,76 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+
+/**
+ * Описание трека в библиотеке плеера: файл и, если он уже проверен, его формат, длительность и размер.
+ */
+@Getter
+public class TrackInfo {
+    private final String name;
+    private final File file;
+    private final long sizeBytes;
+    private final long lastModified;
+    /**
+     * Формат файла или null, если файл еще не проверялся.
+     */
+    private final AudioFormat format;
+    /**
+     * Длина в кадрах или -1, если неизвестна.
+     */
+    private final long frameLength;
+    /**
+     * Длительность в миллисекундах или -1, если неизвестна.
+     */
+    private final long durationMs;
+
+    TrackInfo(@NonNull String name, @NonNull File file, long sizeBytes, long lastModified, AudioFormat format, long frameLength, long durationMs) {
+        this.name = name;
+        this.file = file;
+        this.sizeBytes = sizeBytes;
+        this.lastModified = lastModified;
+        this.format = format;
+        this.frameLength = frameLength;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Трек без проверки формата (например, добавленный вручную).
+     */
+    static TrackInfo unprobed(@NonNull String name, @NonNull File file) {
+        return new TrackInfo(name, file, file.length(), file.lastModified(), null, -1, -1);
+    }
+
+    /**
+     * Читает заголовок файла: формат, длину и длительность.
+     */
+    static TrackInfo probe(@NonNull String name, @NonNull File file) throws Exception {
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+        AudioFormat format = fileFormat.getFormat();
+        long frames = fileFormat.getFrameLength() == AudioSystem.NOT_SPECIFIED ? -1 : fileFormat.getFrameLength();
+        long durationMs = -1;
+        if (frames > 0 && format.getFrameRate() > 0) {
+            durationMs = (long) (frames * 1000d / format.getFrameRate());
+        } else if (fileFormat.properties().get("duration") instanceof Long micros) {
+            durationMs = micros / 1000;
+        }
+        return new TrackInfo(name, file, file.length(), file.lastModified(), format, frames, durationMs);
+    }
+
+    /**
+     * @return true, если файл на диске не менялся с момента проверки.
+     */
+    boolean isUpToDate(File actual) {
+        return file.equals(actual) && sizeBytes == actual.length() && lastModified == actual.lastModified();
+    }
+
+    TrackInfo rename(String newName) {
+        return new TrackInfo(newName, file, sizeBytes, lastModified, format, frameLength, durationMs);
+    }
+}
@@ -0,0 +1,329 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static fox.Out.Print;
+
+/**
+ * Библиотека треков одного плеера. Сканирует каталог рекурсивно, проверяет файлы параллельно в потоках ввода-вывода плеера
+ * и сохраняет индекс на диск, чтобы при следующем запуске не читать заголовки неизменившихся файлов.
+ * Имя трека - путь относительно каталога без расширения, через '/' (файлы в корне - просто имя файла без расширения).
+ */
+public class TrackLibrary {
+    public static final String INDEX_EXTENSION = ".idx";
+    private static final String INDEX_MAGIC = "FOXIDX";
+    private static final int INDEX_VERSION = 1;
+
+    private final Map<String, TrackInfo> tracks = new ConcurrentHashMap<>();
+    private final PlayerScheduler scheduler;
+    /**
+     * Вызывается с именем трека, чей файл заменился (плеер сбрасывает по нему кэш).
+     */
+    private final Consumer<String> onReplaced;
+
+    /**
+     * Файл индекса. Если не задан - свой файл для каждого каталога в кэше пользователя (см. {@link #defaultIndexPath(Path)}),
+     * сами каталоги ресурсов не меняются и могут быть только для чтения.
+     */
+    @Getter
+    @Setter
+    private volatile Path indexPath;
+
+    /**
+     * @param scheduler потоки, в которых проверяются файлы и идет {@link #scanAsync(Path)}.
+     */
+    public TrackLibrary(@NonNull PlayerScheduler scheduler) {
+        this(scheduler, name -> {});
+    }
+
+    TrackLibrary(@NonNull PlayerScheduler scheduler, @NonNull Consumer<String> onReplaced) {
+        this.scheduler = scheduler;
+        this.onReplaced = onReplaced;
+    }
+
+    public TrackInfo get(@NonNull String trackName) {
+        return tracks.get(trackName);
+    }
+
+    public File getFile(@NonNull String trackName) {
+        TrackInfo info = tracks.get(trackName);
+        return info == null ? null : info.getFile();
+    }
+
+    public boolean contains(@NonNull String trackName) {
+        return tracks.containsKey(trackName);
+    }
+
+    public Collection<TrackInfo> getTracks() {
+        return Collections.unmodifiableCollection(tracks.values());
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+
+    /**
+     * Добавляет файл без проверки формата.
+     * @return файл, ранее зарегистрированный под этим именем, или null.
+     */
+    public File add(@NonNull String trackName, @NonNull File sourceFile) {
+        return put(TrackInfo.unprobed(trackName, sourceFile));
+    }
+
+    private File put(TrackInfo info) {
+        TrackInfo old = tracks.put(info.getName(), info);
+        if (old != null && !old.isUpToDate(info.getFile())) {
+            onReplaced.accept(info.getName());
+        }
+        return old == null ? null : old.getFile();
+    }
+
+    /**
+     * Рекурсивно сканирует каталог и добавляет найденные аудио-файлы.
+     * Треки из этого каталога, чьих файлов больше нет (или они перестали читаться), удаляются из библиотеки.
+     * @return число добавленных треков.
+     */
+    public int scan(@NonNull Path audioDirectory) {
+        if (!Files.isDirectory(audioDirectory)) {
+            throw new FoxPlayerException(String.format("TrackLibrary.scan: Media directory %s is not exists?", audioDirectory));
+        }
+        Path index = indexPath == null ? defaultIndexPath(audioDirectory) : indexPath;
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(audioDirectory)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().startsWith("."))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new FoxPlayerException(String.format("TrackLibrary.scan: Media directory %s can not be read: %s", audioDirectory, e.getMessage()));
+        }
+
+        Map<String, TrackInfo> known = readIndex(index);
+        List<TrackInfo> found = probeAll(audioDirectory, files, known);
+
+        for (TrackInfo info : found) {
+            put(info);
+        }
+        removeMissing(audioDirectory, found);
+        if (found.size() != known.size() || found.stream().anyMatch(info -> known.get(info.getFile().getAbsolutePath()) != info)) {
+            writeIndex(index, found);
+        }
+        Print(getClass(), LEVEL.DEBUG, String.format("TrackLibrary.scan: %d tracks was found in %s (%d from index).",
+                found.size(), audioDirectory, found.stream().filter(info -> known.get(info.getFile().getAbsolutePath()) == info).count()));
+        return found.size();
+    }
+
+    /**
+     * То же, что {@link #scan(Path)}, но в фоне, в потоке ввода-вывода плеера.
+     */
+    public CompletableFuture<Integer> scanAsync(@NonNull Path audioDirectory) {
+        return CompletableFuture.supplyAsync(() -> scan(audioDirectory), scheduler::io);
+    }
+
+    /**
+     * Файл индекса каталога по умолчанию: {@code <кэш пользователя>/foxplayer/<id каталога>.idx}.
+     * Кэш пользователя - %LOCALAPPDATA% в Windows, $XDG_CACHE_HOME или ~/.cache в остальных системах.
+     */
+    public static Path defaultIndexPath(@NonNull Path audioDirectory) {
+        String base = System.getenv("LOCALAPPDATA");
+        if (base == null || base.isBlank()) {
+            base = System.getenv("XDG_CACHE_HOME");
+        }
+        Path cache = base == null || base.isBlank() ? Paths.get(System.getProperty("user.home"), ".cache") : Paths.get(base);
+        String id = UUID.nameUUIDFromBytes(audioDirectory.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8)).toString();
+        return cache.resolve("foxplayer").resolve(id + INDEX_EXTENSION);
+    }
+
+    /**
+     * Проверяет файлы в потоках ввода-вывода плеера. Вызывающий поток проверяет файлы вместе с ними, поэтому скан
+     * не ждет, пока освободятся занятые потоки (и не блокируется, если сам идет в потоке ввода-вывода).
+     */
+    private List<TrackInfo> probeAll(Path root, List<Path> files, Map<String, TrackInfo> known) {
+        TrackInfo[] results = new TrackInfo[files.size()];
+        AtomicInteger next = new AtomicInteger(0);
+        CountDownLatch probed = new CountDownLatch(results.length);
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+                try {
+                    results[i] = probe(root, files.get(i), known);
+                } finally {
+                    probed.countDown();
+                }
+            }
+        };
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(PlayerScheduler.IO_WORKERS, results.length); i++) {
+            helpers.add(scheduler.io(worker));
+        }
+        worker.run();
+        for (Future<?> helper : helpers) {
+            helper.cancel(false); // еще не начавшим работы уже нет
+        }
+        try {
+            probed.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new FoxPlayerException("TrackLibrary.scan: The scan was interrupted.");
+        }
+
+        List<TrackInfo> found = new ArrayList<>(results.length);
+        for (TrackInfo info : results) {
+            if (info != null) {
+                found.add(info);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Удаляет треки каталога {@code root}, которых нет среди {@code found}.
+     */
+    private void removeMissing(Path root, List<TrackInfo> found) {
+        Path dir = root.toAbsolutePath().normalize();
+        Set<File> present = new HashSet<>(found.size() * 2);
+        for (TrackInfo info : found) {
+            present.add(info.getFile());
+        }
+        for (TrackInfo info : tracks.values()) {
+            if (!present.contains(info.getFile()) && info.getFile().toPath().toAbsolutePath().normalize().startsWith(dir)
+                    && tracks.remove(info.getName(), info)) {
+                onReplaced.accept(info.getName());
+                Print(getClass(), LEVEL.DEBUG, "TrackLibrary.scan: The track '" + info.getName() + "' was removed, its file is absent.");
+            }
+        }
+    }
+
+    private static TrackInfo probe(Path root, Path path, Map<String, TrackInfo> known) {
+        File file = path.toFile();
+        String name = trackName(root, path);
+        TrackInfo cached = known.get(file.getAbsolutePath());
+        if (cached != null && cached.isUpToDate(file)) {
+            return cached.getName().equals(name) ? cached : cached.rename(name);
+        }
+        try {
+            return TrackInfo.probe(name, file);
+        } catch (Exception e) {
+            Print(TrackLibrary.class, LEVEL.DEBUG, "TrackLibrary: The file " + path + " is not a supported audio file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static String trackName(Path root, Path file) {
+        String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+        int dot = relative.lastIndexOf('.');
+        return dot > relative.lastIndexOf('/') + 1 ? relative.substring(0, dot) : relative;
+    }
+
+    private Map<String, TrackInfo> readIndex(Path index) {
+        if (!Files.isRegularFile(index)) {
+            return Collections.emptyMap();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (!INDEX_MAGIC.equals(in.readUTF()) || in.readInt() != INDEX_VERSION) {
+                return Collections.emptyMap();
+            }
+            int count = in.readInt();
+            Map<String, TrackInfo> result = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String name = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                AudioFormat format = null;
+                if (in.readBoolean()) {
+                    format = new AudioFormat(new AudioFormat.Encoding(in.readUTF()), in.readFloat(), in.readInt(),
+                            in.readInt(), in.readInt(), in.readFloat(), in.readBoolean());
+                }
+                long frames = in.readLong();
+                long duration = in.readLong();
+                result.put(path, new TrackInfo(name, new File(path), size, modified, format, frames, duration));
+            }
+            return result;
+        } catch (IOException e) {
+            Print(getClass(), LEVEL.INFO, "TrackLibrary: The index " + index + " is damaged and will be rebuilt: " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private void writeIndex(Path index, List<TrackInfo> infos) {
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try {
+            if (index.getParent() != null) {
+                Files.createDirectories(index.getParent());
+            }
+        } catch (IOException e) {
+            Print(getClass(), LEVEL.INFO, "TrackLibrary: The index " + index + " can not be written: " + e.getMessage());
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeUTF(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(infos.size());
+            for (TrackInfo info : infos) {
+                out.writeUTF(info.getFile().getAbsolutePath());
+                out.writeUTF(info.getName());
+                out.writeLong(info.getSizeBytes());
+                out.writeLong(info.getLastModified());
+                AudioFormat format = info.getFormat();
+                out.writeBoolean(format != null);
+                if (format != null) {
+                    out.writeUTF(format.getEncoding().toString());
+                    out.writeFloat(format.getSampleRate());
+                    out.writeInt(format.getSampleSizeInBits());
+                    out.writeInt(format.getChannels());
+                    out.writeInt(format.getFrameSize());
+                    out.writeFloat(format.getFrameRate());
+                    out.writeBoolean(format.isBigEndian());
+                }
+                out.writeLong(info.getFrameLength());
+                out.writeLong(info.getDurationMs());
+            }
+        } catch (IOException e) {
+            Print(getClass(), LEVEL.INFO, "TrackLibrary: The index " + index + " can not be written: " + e.getMessage());
+            return;
+        }
+        try {
+            try {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Print(getClass(), LEVEL.INFO, "TrackLibrary: The index " + index + " can not be replaced: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package fox.player;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Распределение голосов плеера по {@link VoicePolicy}: запуск трека отбрасывается или вытесняет другой голос
+ * еще до создания потока и открытия линии.
+ * Интервал перезапуска проверяется в вызывающем потоке (без постановки команды в очередь),
+ * лимиты экземпляров и голосов - в потоке управления плеера, которому принадлежит набор звучащих голосов.
+ * Набор ограничен емкостью {@link #getCapacity()}: отыгравшие голоса убираются из него без блокировок в том же потоке.
+ */
+public class VoiceAllocator {
+    /**
+     * Длительность затухания вытесненного голоса.
+     */
+    public static final int STEAL_FADE_MS = 30;
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Map<String, VoicePolicy> policies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> lastTriggers = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stolen = new LongAdder();
+    @Getter
+    private volatile int maxVoices = 0;
+
+    // только поток управления плеера:
+    private final PlayerVoice[] voices;
+    private final int[] priorities;
+    private final long[] startTimes;
+    private int size = 0;
+
+    public VoiceAllocator() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity сколько голосов может звучать одновременно независимо от {@link #setMaxVoices(int)}.
+     */
+    public VoiceAllocator(int capacity) {
+        if (capacity < 1) {
+            throw new FoxPlayerException("VoiceAllocator: The capacity must be positive, but was " + capacity);
+        }
+        voices = new PlayerVoice[capacity];
+        priorities = new int[capacity];
+        startTimes = new long[capacity];
+    }
+
+    public int getCapacity() {
+        return voices.length;
+    }
+
+    /**
+     * @param policy правила для трека или null - вернуть {@link VoicePolicy#DEFAULT}.
+     */
+    public void setPolicy(@NonNull String trackName, VoicePolicy policy) {
+        if (policy == null) {
+            policies.remove(trackName);
+            lastTriggers.remove(trackName);
+        } else {
+            policies.put(trackName, policy);
+        }
+    }
+
+    public VoicePolicy getPolicy(@NonNull String trackName) {
+        return policies.getOrDefault(trackName, VoicePolicy.DEFAULT);
+    }
+
+    /**
+     * @param maxVoices сколько голосов плеера может звучать одновременно (0 - без ограничения).
+     */
+    public void setMaxVoices(int maxVoices) {
+        if (maxVoices < 0) {
+            throw new FoxPlayerException("VoiceAllocator: The voices limit must not be negative, but was " + maxVoices);
+        }
+        this.maxVoices = maxVoices;
+    }
+
+    /**
+     * @return сколько запусков было отброшено (интервал перезапуска или лимиты).
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return сколько звучащих голосов было вытеснено новыми запусками.
+     */
+    public long getStolen() {
+        return stolen.sum();
+    }
+
+    /**
+     * Проверка интервала перезапуска, вызывается в потоке, запросившем воспроизведение.
+     * @param now момент запроса по {@link System#nanoTime()}.
+     * @return false, если трек запускался слишком недавно и запуск отброшен.
+     */
+    boolean tryTrigger(String trackName, long now) {
+        VoicePolicy policy = getPolicy(trackName);
+        if (policy.getMinIntervalMs() == 0) {
+            return true;
+        }
+        AtomicLong last = lastTriggers.computeIfAbsent(trackName, k -> new AtomicLong(Long.MIN_VALUE));
+        long previous = last.get();
+        boolean isTooSoon = previous != Long.MIN_VALUE && now - previous < TimeUnit.MILLISECONDS.toNanos(policy.getMinIntervalMs());
+        // при одновременных запусках проходит только один:
+        if (isTooSoon || !last.compareAndSet(previous, now)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Проверка лимитов перед созданием голоса, при необходимости вытесняет звучащий голос.
+     * @return false, если запуск отброшен.
+     */
+    boolean admit(String trackName) {
+        VoicePolicy policy = getPolicy(trackName);
+        reap();
+
+        if (policy.getMaxInstances() > 0) {
+            int oldest = -1;
+            int instances = 0;
+            for (int i = 0; i < size; i++) {
+                if (voices[i].getTrackName().equals(trackName)) {
+                    instances++;
+                    if (oldest == -1 || startTimes[i] < startTimes[oldest]) {
+                        oldest = i;
+                    }
+                }
+            }
+            if (instances >= policy.getMaxInstances() && !steal(policy.isStealing() ? oldest : -1)) {
+                return false;
+            }
+        }
+
+        int max = maxVoices;
+        int limit = max > 0 ? Math.min(max, voices.length) : voices.length;
+        if (size >= limit) {
+            int victim = -1;
+            for (int i = 0; i < size; i++) {
+                if (victim == -1 || priorities[i] < priorities[victim] || priorities[i] == priorities[victim] && startTimes[i] < startTimes[victim]) {
+                    victim = i;
+                }
+            }
+            // более важный голос новым запуском не вытесняется:
+            if (victim != -1 && priorities[victim] > policy.getPriority()) {
+                victim = -1;
+            }
+            return steal(policy.isStealing() ? victim : -1);
+        }
+        return true;
+    }
+
+    /**
+     * Регистрирует созданный голос (поток управления), место под него освобождает {@link #admit(String)}.
+     */
+    void started(PlayerVoice voice) {
+        if (size == voices.length) {
+            reap();
+            if (size == voices.length) {
+                // места нет и admit не вызывался - голос глушится, иначе он звучал бы вне набора:
+                voice.stop(STEAL_FADE_MS);
+                dropped.increment();
+                return;
+            }
+        }
+        voices[size] = voice;
+        priorities[size] = getPolicy(voice.getTrackName()).getPriority();
+        startTimes[size] = System.nanoTime();
+        size++;
+    }
+
+    /**
+     * Убирает отыгравшие голоса из набора (поток управления).
+     * @return сколько голосов убрано.
+     */
+    int reap() {
+        int removed = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (voices[i].isFinished()) {
+                remove(i);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return количество голосов в наборе (поток управления, актуально после {@link #reap()}).
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return голос из набора по индексу от 0 до {@link #size()} (поток управления).
+     */
+    PlayerVoice get(int index) {
+        return voices[index];
+    }
+
+    /**
+     * Забывает все голоса, например после остановки плеера (поток управления).
+     */
+    void clear() {
+        Arrays.fill(voices, 0, size, null);
+        size = 0;
+    }
+
+    private boolean steal(int victim) {
+        if (victim == -1) {
+            dropped.increment();
+            return false;
+        }
+        voices[victim].stop(STEAL_FADE_MS);
+        remove(victim);
+        stolen.increment();
+        return true;
+    }
+
+    /**
+     * Порядок в наборе не важен (возраст голоса хранится отдельно), поэтому на место удаленного встает последний.
+     */
+    private void remove(int index) {
+        int last = --size;
+        voices[index] = voices[last];
+        priorities[index] = priorities[last];
+        startTimes[index] = startTimes[last];
+        voices[last] = null;
+    }
+}
@@ -0,0 +1,17 @@
+package fox.player;
+
+/**
+ * Уведомления о завершении голосов плеера. Вызывается один раз на голос, в потоке воспроизведения или микшера,
+ * поэтому должен работать быстро и не блокироваться.
+ */
+public interface VoiceListener {
+    /**
+     * Голос доиграл или был остановлен.
+     */
+    default void onFinished(String trackName) {}
+
+    /**
+     * Голос прерван ошибкой (чтение, декодирование или линия вывода).
+     */
+    default void onError(String trackName, Throwable error) {}
+}
@@ -0,0 +1,46 @@
+package fox.player;
+
+import lombok.Getter;
+
+/**
+ * Правила воспроизведения трека: сколько его экземпляров может звучать одновременно, как часто его можно перезапускать
+ * и насколько он важен, когда голосов не хватает (см. {@link VoiceAllocator}).
+ */
+public class VoicePolicy {
+    /**
+     * Без ограничений, приоритет 0, при нехватке голосов вытесняет менее важные или более старые голоса.
+     */
+    public static final VoicePolicy DEFAULT = new VoicePolicy(0, 0, 0, true);
+
+    @Getter
+    private final int maxInstances;
+    @Getter
+    private final int minIntervalMs;
+    @Getter
+    private final int priority;
+    @Getter
+    private final boolean isStealing;
+
+    /**
+     * @param maxInstances сколько экземпляров трека может звучать одновременно (0 - без ограничения).
+     * @param minIntervalMs минимальный интервал между запусками трека, более частые запуски отбрасываются.
+     * @param priority важность трека: при нехватке голосов вытесняются голоса с меньшим (или равным) приоритетом.
+     * @param isStealing вытеснять ли старый голос при достижении лимита (false - отбросить новый запуск).
+     */
+    public VoicePolicy(int maxInstances, int minIntervalMs, int priority, boolean isStealing) {
+        if (maxInstances < 0 || minIntervalMs < 0) {
+            throw new FoxPlayerException(String.format("VoicePolicy: Wrong instances limit (%d) or retrigger interval (%d ms).",
+                    maxInstances, minIntervalMs));
+        }
+        this.maxInstances = maxInstances;
+        this.minIntervalMs = minIntervalMs;
+        this.priority = priority;
+        this.isStealing = isStealing;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VoicePolicy (max %s, interval %d ms, priority %d, %s)",
+                maxInstances == 0 ? "unlimited" : String.valueOf(maxInstances), minIntervalMs, priority, isStealing ? "steal" : "drop");
+    }
+}
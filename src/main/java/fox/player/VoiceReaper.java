@@ -0,0 +1,78 @@
+package fox.player;
+
+import fox.Out.LEVEL;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static fox.Out.Print;
+
+/**
+ * Слушатель, которого плеер отдает своим голосам: передает завершения и ошибки пользовательскому {@link VoiceListener}
+ * и ставит в поток управления одну (на все одновременные завершения) команду уборки отыгравших голосов из {@link VoiceAllocator}.
+ */
+class VoiceReaper implements VoiceListener, Runnable {
+    private final String name;
+    private final VoiceAllocator allocator;
+    private final CommandDispatcher commands;
+    private final AtomicBoolean isQueued = new AtomicBoolean(false);
+    private volatile VoiceListener listener;
+
+    VoiceReaper(@NonNull String name, @NonNull VoiceAllocator allocator, @NonNull CommandDispatcher commands) {
+        this.name = name;
+        this.allocator = allocator;
+        this.commands = commands;
+    }
+
+    VoiceListener getListener() {
+        return listener;
+    }
+
+    void setListener(VoiceListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onFinished(String trackName) {
+        requestReap();
+        VoiceListener l = listener;
+        if (l != null) {
+            try {
+                l.onFinished(trackName);
+            } catch (Exception e) {
+                Print(getClass(), LEVEL.INFO, "FoxPlayer '" + name + "': The voice listener was failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onError(String trackName, Throwable error) {
+        requestReap();
+        VoiceListener l = listener;
+        if (l == null) {
+            Print(getClass(), LEVEL.INFO, String.format("FoxPlayer '%s': The track '%s' was failed: %s", name, trackName, error.getMessage()));
+            return;
+        }
+        try {
+            l.onError(trackName, error);
+        } catch (Exception e) {
+            Print(getClass(), LEVEL.INFO, "FoxPlayer '" + name + "': The voice listener was failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Уборка в потоке управления.
+     */
+    @Override
+    public void run() {
+        isQueued.set(false);
+        allocator.reap();
+    }
+
+    private void requestReap() {
+        // если очередь переполнена, голоса уберет ближайшая команда play:
+        if (isQueued.compareAndSet(false, true) && !commands.offer(this)) {
+            isQueued.set(false);
+        }
+    }
+}
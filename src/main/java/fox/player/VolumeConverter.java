@@ -15,11 +15,35 @@ public class VolumeConverter {
      */
     public float volumePercentToGain(float percent) {
 //        float gain = (maximum - minimum) * (percent / 100f);
+        percent = Math.max(0f, Math.min(100f, percent));
         float gain = minimum - ((minimum - maximum) * (percent / 100f));
 //        System.out.println("Income percent: " + percent + "; Gain: " + gain);
         return gain;
     }
 
+    /**
+     * Метод преобразовывает gain аудио-устройства (в dB) в линейный множитель амплитуды
+     * для программной обработки PCM. В диапазоне таблицы {@link PcmKernels#dbToLinear(float)} значение берется из неё.
+     * @param gain gain в dB (значения не выше {@param minimum} дают тишину).
+     * @return множитель амплитуды (0 - тишина, 1 - без изменений).
+     */
+    public float gainToLinear(float gain) {
+        if (gain <= minimum) {
+            return 0f;
+        }
+        boolean inTable = gain >= PcmKernels.TABLE_MIN_DB + PcmKernels.TABLE_STEP_DB && gain <= PcmKernels.TABLE_MAX_DB;
+        return inTable ? PcmKernels.dbToLinear(gain) : (float) Math.pow(10d, gain / 20d);
+    }
+
+    /**
+     * Метод, обратный {@link #gainToLinear(float)}: линейный множитель амплитуды в gain (dB).
+     * @param linear множитель амплитуды (0 и меньше - тишина).
+     * @return gain в dB, не ниже {@param minimum}.
+     */
+    public float linearToGain(float linear) {
+        return Math.max(minimum, PcmKernels.linearToDb(linear));
+    }
+
     /**
      * Метод преобразовывает gain аудио-устройства в
      * значение процентов громкости для ползунков.
@@ -27,7 +51,7 @@ public class VolumeConverter {
      * @return значение процентов (от 0 до 100).
      */
     public int gainToVolumePercent(float gain) {
-//        int min = -80, max = 6;
-        return 0;
+        float percent = (gain - minimum) / (maximum - minimum) * 100f;
+        return Math.round(Math.max(0f, Math.min(100f, percent)));
     }
 }
@@ -0,0 +1,65 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись PCM в WAV-файл. Данные пишутся потоком, размеры в заголовке исправляются при закрытии.
+ */
+class WavPcmSink implements PcmSink {
+    private static final int HEADER_SIZE = 44;
+
+    private final FileChannel channel;
+    private final AudioFormat format;
+    private long dataBytes = 0;
+
+    WavPcmSink(Path file, AudioFormat format) throws IOException {
+        if (!PcmSource.isPcm16le(format)) {
+            throw new FoxPlayerException("WavPcmSink: Only 16 bit signed little-endian PCM is supported: " + format);
+        }
+        this.format = format;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeFully(header(0), 0);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        writeFully(ByteBuffer.wrap(buffer, offset, length), HEADER_SIZE + dataBytes);
+        dataBytes += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeFully(header(dataBytes), 0);
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    private ByteBuffer header(long dataBytes) {
+        if (dataBytes > 0xFFFFFFFFL - HEADER_SIZE) {
+            throw new FoxPlayerException("WavPcmSink: The WAV data is too long: " + dataBytes + " bytes.");
+        }
+        int channels = format.getChannels();
+        int sampleRate = Math.round(format.getSampleRate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt((int) (36 + dataBytes)).put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        header.put(new byte[] {'d', 'a', 't', 'a'}).putInt((int) dataBytes);
+        return header.flip();
+    }
+}
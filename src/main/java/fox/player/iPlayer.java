@@ -8,11 +8,16 @@ import javax.sound.sampled.SourceDataLine;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 public interface iPlayer {
     void load(@NonNull Path audioDirectoryPath);
+    CompletableFuture<Void> loadAsync(@NonNull Path audioDirectoryPath);
     void add(@NonNull String trackName, @NonNull File sourceFile);
     void play(@NonNull String trackName, boolean isLooped);
+    void play(@NonNull String trackName, long loopStartFrame, long loopEndFrame);
+    void preload(@NonNull String trackName);
+    void evict(@NonNull String trackName);
     void mute(boolean mute);
     void setVolume(float volume);
     void stop();
@@ -0,0 +1,96 @@
+package fox.games;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FoxExperienceTest {
+
+	private static void assertSameBits(double expected, double actual, String message) {
+		assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), message + ": " + expected + " vs " + actual);
+	}
+
+	@Test
+	void batchMatchesScalarForEveryTablePair() {
+		int size = (FoxExperience.TABLE_MAX_LEVEL + 1) * (FoxExperience.TABLE_MAX_LEVEL + 1);
+		int[] players = new int[size];
+		int[] aims = new int[size];
+		for (int p = 0, i = 0; p <= FoxExperience.TABLE_MAX_LEVEL; p++) {
+			for (int a = 0; a <= FoxExperience.TABLE_MAX_LEVEL; a++, i++) {
+				players[i] = p;
+				aims[i] = a;
+			}
+		}
+		double[] out = new double[size];
+		FoxExperience.getExp(players, aims, out);
+
+		for (int i = 0; i < size; i++) {
+			assertSameBits(FoxExperience.getExp(players[i], aims[i]), out[i], players[i] + " vs " + aims[i]);
+		}
+	}
+
+	@Test
+	void batchMatchesScalarOutsideTableAndForNegativeLevels() {
+		Random random = new Random(14);
+		int n = 100_000;
+		int[] players = new int[n];
+		int[] aims = new int[n];
+		for (int i = 0; i < n; i++) {
+			players[i] = random.nextInt(600) - 200;
+			aims[i] = random.nextInt(600) - 200;
+		}
+		int[] edges = {-1, 0, FoxExperience.TABLE_MAX_LEVEL, FoxExperience.TABLE_MAX_LEVEL + 1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+		for (int i = 0; i < edges.length * edges.length; i++) {
+			players[i] = edges[i / edges.length];
+			aims[i] = edges[i % edges.length];
+		}
+		double[] out = new double[n];
+		FoxExperience.getExp(players, aims, out);
+
+		for (int i = 0; i < n; i++) {
+			assertSameBits(FoxExperience.getExp(players[i], aims[i]), out[i], players[i] + " vs " + aims[i]);
+		}
+	}
+
+	@Test
+	void singleAimBatchMatchesScalar() {
+		int[] players = new int[400];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = i - 100;
+		}
+		double[] out = new double[players.length];
+		for (int aim : new int[] {-5, 0, 1, 60, FoxExperience.TABLE_MAX_LEVEL, FoxExperience.TABLE_MAX_LEVEL + 1, 1_000}) {
+			FoxExperience.getExp(players, aim, out);
+			for (int i = 0; i < players.length; i++) {
+				assertSameBits(FoxExperience.getExp(players[i], aim), out[i], players[i] + " vs " + aim);
+			}
+		}
+	}
+
+	@Test
+	void floatBatchMatchesScalar() {
+		Random random = new Random(41);
+		int n = 10_000;
+		float[] players = new float[n];
+		float[] aims = new float[n];
+		for (int i = 0; i < n; i++) {
+			players[i] = random.nextFloat() * 300f - 50f;
+			aims[i] = random.nextFloat() * 300f - 50f;
+		}
+		double[] out = new double[n];
+		FoxExperience.getExp(players, aims, 120f, 12f, out);
+
+		for (int i = 0; i < n; i++) {
+			assertSameBits(FoxExperience.getExp(players[i], aims[i], 120f, 12f), out[i], players[i] + " vs " + aims[i]);
+		}
+	}
+
+	@Test
+	void rejectsWrongBatchSizes() {
+		assertThrows(IllegalArgumentException.class, () -> FoxExperience.getExp(new int[2], new int[3], new double[3]));
+		assertThrows(IllegalArgumentException.class, () -> FoxExperience.getExp(new int[3], new int[3], new double[2]));
+	}
+}
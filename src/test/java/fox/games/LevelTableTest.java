@@ -0,0 +1,48 @@
+package fox.games;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LevelTableTest {
+	private final LevelTable table = LevelTable.of(new long[] {10, 20, 30});
+
+	@Test
+	void findsLevelOnThresholds() {
+		assertEquals(4, table.getMaxLevel());
+		assertEquals(1, table.getLevel(-5));
+		assertEquals(1, table.getLevel(0));
+		assertEquals(1, table.getLevel(9));
+		assertEquals(2, table.getLevel(10));
+		assertEquals(2, table.getLevel(29));
+		assertEquals(3, table.getLevel(30));
+		assertEquals(4, table.getLevel(60));
+		assertEquals(4, table.getLevel(1_000));
+	}
+
+	@Test
+	void reportsProgressToNextLevel() {
+		assertEquals(15, table.getXpToNextLevel(15));
+		assertEquals(0.25, table.getProgress(15), 1e-9);
+		assertEquals(0, table.getXpToNextLevel(100));
+		assertEquals(1.0, table.getProgress(100), 1e-9);
+		assertEquals(30, table.getXpForLevel(3));
+	}
+
+	@Test
+	void defaultKillsMatchFoxExperience() {
+		assertEquals(10, LevelTable.DEFAULT_KILLS.applyAsInt(1));
+		assertEquals(20, LevelTable.DEFAULT_KILLS.applyAsInt(10));
+
+		LevelTable standard = LevelTable.standard(10);
+		assertEquals(Math.round(10 * FoxExperience.getExp(1, 1)), standard.getXpForLevel(2));
+		assertEquals(standard.getXpForLevel(9) + Math.round(19 * FoxExperience.getExp(9, 9)), standard.getXpForLevel(10));
+	}
+
+	@Test
+	void rejectsWrongInput() {
+		assertThrows(IllegalArgumentException.class, () -> LevelTable.of(new long[] {10, 0}));
+		assertThrows(IllegalArgumentException.class, () -> table.getXpForLevel(5));
+	}
+}
@@ -0,0 +1,91 @@
+package fox.games;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XpLedgerTest {
+	private final LevelTable table = LevelTable.of(new long[] {10, 20, 30});
+
+	@Test
+	void reportsLevelUps() {
+		XpLedger ledger = new XpLedger(table, 2);
+		assertEquals(0, ledger.credit(0, 9));
+		assertEquals(1, ledger.credit(0, 1));
+		assertEquals(2, ledger.credit(0, 50));
+		assertEquals(0, ledger.credit(0, 1_000));
+		assertEquals(4, ledger.getLevel(0));
+		assertEquals(1, ledger.getLevel(1));
+	}
+
+	@Test
+	void creditsConcurrentlyWithoutLosingXp() throws InterruptedException {
+		int threads = 4;
+		int credits = 10_000;
+		XpLedger ledger = new XpLedger(LevelTable.standard(60), threads + 1);
+		AtomicInteger sharedLevelUps = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int own = t + 1;
+			Thread worker = new Thread(() -> {
+				for (int i = 0; i < credits; i++) {
+					sharedLevelUps.addAndGet(ledger.credit(0, 7));
+					ledger.credit(own, 3);
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertEquals(7L * threads * credits, ledger.getXp(0));
+		assertEquals(ledger.getLevel(0) - 1, sharedLevelUps.get());
+		for (int t = 1; t <= threads; t++) {
+			assertEquals(3L * credits, ledger.getXp(t));
+		}
+	}
+
+	@Test
+	void rejectsNegativeXp() {
+		XpLedger ledger = new XpLedger(table, 1);
+		ledger.credit(0, 15);
+		assertThrows(IllegalArgumentException.class, () -> ledger.credit(0, -5));
+		assertThrows(IllegalArgumentException.class, () -> ledger.setXp(0, -1));
+		assertEquals(15, ledger.getXp(0));
+	}
+
+	@Test
+	void skipsNegativeBatchXp() {
+		XpLedger ledger = new XpLedger(table, 2);
+		double[] xp = new double[2];
+		FoxExperience.getExp(new int[] {30, 1}, new int[] {5, 1}, xp);
+
+		assertEquals(1, ledger.credit(new int[] {0, 1}, xp));
+		assertEquals(0, ledger.getXp(0));
+		assertEquals(Math.round(FoxExperience.getExp(1, 1)), ledger.getXp(1));
+	}
+
+	@Test
+	void saturatesAtMaxXp() {
+		XpLedger ledger = new XpLedger(table, 1);
+		ledger.setXp(0, Long.MAX_VALUE - 5);
+		assertEquals(0, ledger.credit(0, 100));
+		assertEquals(Long.MAX_VALUE, ledger.getXp(0));
+		ledger.credit(0, Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, ledger.getXp(0));
+	}
+
+	@Test
+	void rejectsWrongPlayerId() {
+		XpLedger ledger = new XpLedger(table, 2);
+		assertThrows(IndexOutOfBoundsException.class, () -> ledger.credit(2, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> ledger.getXp(-1));
+	}
+}
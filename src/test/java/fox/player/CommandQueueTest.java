@@ -0,0 +1,96 @@
+package fox.player;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandQueueTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(8, new CommandQueue<Integer>(5).capacity());
+        assertEquals(8, new CommandQueue<Integer>(8).capacity());
+        assertThrows(FoxPlayerException.class, () -> new CommandQueue<Integer>(1));
+    }
+
+    @Test
+    void pollsInOfferOrderAcrossWrapAround() {
+        CommandQueue<Integer> queue = new CommandQueue<>(8);
+        int next = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(queue.offer(next + i));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertEquals(next + i, queue.poll());
+            }
+            next += 5;
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void dropsOffersWhenFull() {
+        CommandQueue<Integer> queue = new CommandQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertFalse(queue.offer(5));
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(6));
+        assertFalse(queue.offer(7));
+        int[] expected = {1, 2, 3, 6};
+        for (int value : expected) {
+            assertEquals(value, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void keepsOrderOfEachProducer() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 2_000;
+        CommandQueue<long[]> queue = new CommandQueue<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long id = p;
+            Thread t = new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!queue.offer(new long[] {id, i})) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        long[] expected = new long[producers];
+        int received = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received < producers * perProducer && System.nanoTime() < deadline) {
+            long[] item = queue.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected[(int) item[0]]++, item[1], "producer " + item[0]);
+            received++;
+        }
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(1));
+        }
+        assertEquals(producers * perProducer, received);
+        assertNull(queue.poll());
+    }
+}
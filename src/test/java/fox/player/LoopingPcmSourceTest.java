@@ -0,0 +1,110 @@
+package fox.player;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static fox.player.TestPcm.MONO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoopingPcmSourceTest {
+
+    @Test
+    void loopsWholeTrackWithoutGaps() throws IOException {
+        PcmSource loop = PcmSource.loop(TestPcm.source(MONO, TestPcm.frames(MONO, 100)), 0, -1);
+        byte[] pcm = TestPcm.readAll(loop, 7, 350 * 2);
+
+        assertEquals(350 * 2, pcm.length);
+        for (int f = 0; f < 350; f++) {
+            assertEquals(TestPcm.value(f % 100), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+    }
+
+    @Test
+    void playsIntroOnceAndSplicesAtLoopPoints() throws IOException {
+        PcmSource loop = PcmSource.loop(TestPcm.source(MONO, TestPcm.frames(MONO, 100)), 20, 50);
+        byte[] pcm = TestPcm.readAll(loop, 13, 200 * 2);
+
+        for (int f = 0; f < 200; f++) {
+            int expected = f < 50 ? f : 20 + (f - 50) % 30;
+            assertEquals(TestPcm.value(expected), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+    }
+
+    @Test
+    void readEndsExactlyAtLoopEnd() throws IOException {
+        PcmSource loop = PcmSource.loop(TestPcm.source(MONO, TestPcm.frames(MONO, 10)), 2, 6);
+        byte[] buffer = new byte[16 * 2];
+        assertEquals(6 * 2, loop.read(buffer, 0, buffer.length));
+        assertEquals(TestPcm.value(5), TestPcm.sample(buffer, MONO, 5));
+
+        assertEquals(4 * 2, loop.read(buffer, 0, buffer.length));
+        int[] expected = {2, 3, 4, 5};
+        for (int f = 0; f < expected.length; f++) {
+            assertEquals(TestPcm.value(expected[f]), TestPcm.sample(buffer, MONO, f), "frame " + f);
+        }
+    }
+
+    @Test
+    void seekMovesLoopPosition() throws IOException {
+        PcmSource loop = PcmSource.loop(TestPcm.source(MONO, TestPcm.frames(MONO, 10)), 0, 8);
+        loop.seek(6);
+        byte[] pcm = TestPcm.readAll(loop, 3, 6 * 2);
+
+        int[] expected = {6, 7, 0, 1, 2, 3};
+        for (int f = 0; f < expected.length; f++) {
+            assertEquals(TestPcm.value(expected[f]), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+    }
+
+    @Test
+    void loopsFileFromMemoryWithoutReopening(@TempDir Path dir) throws Exception {
+        FilePcmSource file = new FilePcmSource(TestPcm.wav(dir, "intro-loop", MONO, TestPcm.frames(MONO, 1000)));
+        PcmSource loop = PcmSource.loop(file, 200, 700);
+        byte[] pcm = TestPcm.readAll(loop, 64, 10_200 * 2);
+
+        for (int f = 0; f < 10_200; f++) {
+            int expected = f < 700 ? f : 200 + (f - 700) % 500;
+            assertEquals(TestPcm.value(expected), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+        assertEquals(1, file.getOpens());
+    }
+
+    @Test
+    void loopsWholeFileFromMemory(@TempDir Path dir) throws Exception {
+        FilePcmSource file = new FilePcmSource(TestPcm.wav(dir, "whole", MONO, TestPcm.frames(MONO, 300)));
+        byte[] pcm = TestPcm.readAll(PcmSource.loop(file, 0, -1), 77, 3000 * 2);
+
+        for (int f = 0; f < 3000; f++) {
+            assertEquals(TestPcm.value(f % 300), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+        assertEquals(1, file.getOpens());
+    }
+
+    @Test
+    void seekIntoIntroKeepsLoopInMemory(@TempDir Path dir) throws Exception {
+        FilePcmSource file = new FilePcmSource(TestPcm.wav(dir, "seek", MONO, TestPcm.frames(MONO, 100)));
+        PcmSource loop = PcmSource.loop(file, 20, 50);
+        TestPcm.readAll(loop, 16, 120 * 2);
+
+        loop.seek(30);
+        assertEquals(1, file.getOpens());
+        loop.seek(10);
+        byte[] pcm = TestPcm.readAll(loop, 16, 100 * 2);
+        for (int f = 0; f < 100; f++) {
+            int expected = f < 40 ? 10 + f : 20 + (f - 40) % 30;
+            assertEquals(TestPcm.value(expected), TestPcm.sample(pcm, MONO, f), "frame " + f);
+        }
+        assertEquals(2, file.getOpens());
+    }
+
+    @Test
+    void rejectsWrongLoopPoints() {
+        PcmSource source = TestPcm.source(MONO, TestPcm.frames(MONO, 10));
+        assertThrows(FoxPlayerException.class, () -> PcmSource.loop(source, 5, 5));
+        assertThrows(FoxPlayerException.class, () -> PcmSource.loop(source, -1, 0));
+    }
+}
@@ -0,0 +1,82 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OfflineRendererTest {
+    private static final AudioFormat FORMAT = SoftMixer.DEFAULT_FORMAT;
+    private static final int TONE_FRAMES = 4410; // 100 мс
+
+    @TempDir
+    Path dir;
+    private FoxPlayer player;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        player = new FoxPlayer("offline");
+        player.add("tone", TestPcm.wav(dir, "tone", FORMAT, TestPcm.frames(FORMAT, TONE_FRAMES)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        player.shutdown();
+    }
+
+    @Test
+    void bufferRenderStopsAtEndOfLastTrack() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(44100 * FORMAT.getFrameSize());
+        long frames = player.offlineRenderer(FORMAT)
+                .play("tone", 0)
+                .play("tone", 50)
+                .render(buffer);
+
+        assertEquals(2205 + TONE_FRAMES, frames);
+        assertEquals(frames * FORMAT.getFrameSize(), buffer.position());
+    }
+
+    @Test
+    void bufferCapsUnstoppedLoop() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(10_000 * FORMAT.getFrameSize());
+        long frames = player.offlineRenderer(FORMAT).play("tone", 0, true, 0f, 0).render(buffer);
+
+        assertEquals(10_000, frames);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void durationRenderIsPaddedWithSilence() throws Exception {
+        Path wav = dir.resolve("out.wav");
+        long frames = player.offlineRenderer(FORMAT).play("tone", 0).renderToWav(wav, 500);
+
+        assertEquals(22050, frames);
+        assertEquals(22050, AudioSystem.getAudioInputStream(wav.toFile()).getFrameLength());
+    }
+
+    @Test
+    void renderUntilEndStopsLoopAtStopTime() throws IOException {
+        Path wav = dir.resolve("out.wav");
+        long frames = player.offlineRenderer(FORMAT)
+                .play("tone", 0, true, 0f, 0)
+                .stop("tone", 250, 0)
+                .renderToWav(wav, 0);
+
+        assertEquals(11025, frames);
+    }
+
+    @Test
+    void unstoppedLoopNeedsDuration() {
+        OfflineRenderer renderer = player.offlineRenderer(FORMAT).play("tone", 0, true, 0f, 0);
+        assertThrows(FoxPlayerException.class, () -> renderer.renderToWav(dir.resolve("out.wav"), 0));
+    }
+}
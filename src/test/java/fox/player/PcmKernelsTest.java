@@ -0,0 +1,62 @@
+package fox.player;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PcmKernelsTest {
+
+    @Test
+    void roundTripsEvery16BitSample() {
+        byte[] pcm = new byte[65536 * 2];
+        for (int v = Short.MIN_VALUE, b = 0; v <= Short.MAX_VALUE; v++, b += 2) {
+            pcm[b] = (byte) v;
+            pcm[b + 1] = (byte) (v >> 8);
+        }
+        float[] samples = new float[65536];
+        byte[] back = new byte[pcm.length];
+
+        PcmKernels.toFloat(pcm, 0, samples, 0, samples.length);
+        PcmKernels.toPcm16(samples, 0, back, 0, samples.length);
+
+        assertArrayEquals(pcm, back);
+        assertEquals(-1f, samples[0]);
+    }
+
+    @Test
+    void saturatesOutOfRangeSamples() {
+        float[] samples = {1f, 1.5f, 1000f, -1f, -1.5f, -1000f, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        short[] expected = {32767, 32767, 32767, -32768, -32768, -32768, 32767, -32768};
+        byte[] pcm = new byte[samples.length * 2];
+
+        PcmKernels.toPcm16(samples, 0, pcm, 0, samples.length);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], (short) (pcm[2 * i] & 0xFF | pcm[2 * i + 1] << 8), "sample " + i);
+        }
+    }
+
+    @Test
+    void saturatesMixedSum() {
+        float[] acc = {0.75f, -0.75f};
+        PcmKernels.mix(acc, 0, new float[] {0.75f, -0.75f}, 0, 2);
+        byte[] pcm = new byte[4];
+
+        PcmKernels.toPcm16(acc, 0, pcm, 0, 2);
+
+        assertEquals(32767, (short) (pcm[0] & 0xFF | pcm[1] << 8));
+        assertEquals(-32768, (short) (pcm[2] & 0xFF | pcm[3] << 8));
+    }
+
+    @Test
+    void dbTableMatchesFormula() {
+        // первый шаг таблицы - переход от тишины, точность считается со второго узла:
+        for (float db = PcmKernels.TABLE_MIN_DB + PcmKernels.TABLE_STEP_DB; db <= PcmKernels.TABLE_MAX_DB; db += 0.037f) {
+            double exact = Math.pow(10d, db / 20d);
+            assertEquals(exact, PcmKernels.dbToLinear(db), exact * 1e-4, "dB " + db);
+        }
+        assertEquals(0f, PcmKernels.dbToLinear(PcmKernels.TABLE_MIN_DB));
+        assertEquals(1f, PcmKernels.dbToLinear(0f), 1e-6);
+    }
+}
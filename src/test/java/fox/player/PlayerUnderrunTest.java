@@ -0,0 +1,78 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Опустошения буфера, вызванные через {@link SimulatedMixerProvider#injectUnderruns()}, доходят до метрик плеера
+ * и увеличивают буфер адаптивного профиля только у этого плеера.
+ */
+class PlayerUnderrunTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void install() {
+        SimulatedMixerProvider.install();
+        SimulatedMixerProvider.setSpeed(0);
+    }
+
+    @AfterAll
+    static void uninstall() {
+        SimulatedMixerProvider.uninstall();
+        SimulatedMixerProvider.setSpeed(1);
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @Test
+    void injectedUnderrunsGrowAdaptiveBufferOfThisPlayer() throws Exception {
+        FoxPlayer player = new FoxPlayer("underruns");
+        FoxPlayer other = new FoxPlayer("other");
+        try {
+            player.setOutputFormat(SoftMixer.DEFAULT_FORMAT);
+            player.add("tone", TestPcm.wav(dir, "tone", SoftMixer.DEFAULT_FORMAT, TestPcm.frames(SoftMixer.DEFAULT_FORMAT, 4410)));
+            player.play("tone", true, LatencyProfile.SFX);
+            assertTrue(await(() -> player.getMetrics().getPlays() > 0), "the track was not started");
+
+            long needed = LatencyProfile.SFX.getUnderrunsToGrow();
+            assertTrue(await(() -> {
+                SimulatedMixerProvider.injectUnderruns();
+                return player.getMetrics().getUnderruns() >= needed;
+            }), "underruns: " + player.getMetrics().getUnderruns());
+
+            int grownMs = LatencyProfile.SFX.getBufferMs() * 2;
+            assertTrue(await(() -> player.getGrownProfile(LatencyProfile.SFX).getBufferMs() >= grownMs));
+            assertEquals(40, LatencyProfile.SFX.getBufferMs());
+            assertSame(LatencyProfile.SFX, other.getGrownProfile(LatencyProfile.SFX));
+
+            player.resetGrownProfiles();
+            assertSame(LatencyProfile.SFX, player.getGrownProfile(LatencyProfile.SFX));
+        } finally {
+            player.stop();
+            player.shutdown();
+            other.shutdown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static fox.player.TestPcm.MONO;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadAheadPcmSourceTest {
+    private final PlayerScheduler scheduler = new PlayerScheduler("readahead-test", 1);
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown(1000);
+    }
+
+    /**
+     * Источник, который отдает не больше {@code chunkFrames} кадров за чтение и ждет перед каждым чтением.
+     */
+    private static PcmSource slow(byte[] pcm, int chunkFrames, long delayMs) {
+        PcmSource memory = TestPcm.source(MONO, pcm);
+        return new PcmSource() {
+            @Override
+            public AudioFormat getFormat() {
+                return MONO;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return memory.read(buffer, offset, Math.min(length, chunkFrames * MONO.getFrameSize()));
+            }
+
+            @Override
+            public void seek(long frame) throws IOException {
+                memory.seek(frame);
+            }
+        };
+    }
+
+    @Test
+    void reportsStallsOfSlowDecoderToMetrics() throws IOException {
+        byte[] pcm = TestPcm.frames(MONO, 2000);
+        PlayerMetrics metrics = new PlayerMetrics("stalls");
+        PcmSource source = PcmSource.readAhead(slow(pcm, 100, 5), 10, scheduler, metrics, "slow");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[400 * MONO.getFrameSize()];
+        int reads = 0;
+        int n;
+        while ((n = source.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, n);
+            reads++;
+        }
+        source.close();
+
+        assertArrayEquals(pcm, out.toByteArray());
+        assertTrue(metrics.getReadAheadStalls() > 0);
+        assertTrue(metrics.getReadAheadStalls() <= reads + 1, "stalls " + metrics.getReadAheadStalls() + ", reads " + reads);
+    }
+
+    @Test
+    void countsEmptyPollAsStall() throws IOException {
+        PlayerMetrics metrics = new PlayerMetrics("poll");
+        ReadAheadPcmSource source = new ReadAheadPcmSource(slow(TestPcm.frames(MONO, 100), 100, 500), 4096, scheduler, metrics, "poll");
+
+        assertEquals(0, source.poll(new byte[64], 0, 64));
+        assertEquals(1, metrics.getReadAheadStalls());
+        source.close();
+    }
+}
@@ -0,0 +1,118 @@
+package fox.player;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+import static fox.player.TestPcm.MONO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResamplingPcmSourceTest {
+
+    private static byte[] constant(AudioFormat format, int frames, short value) {
+        byte[] pcm = new byte[frames * format.getFrameSize()];
+        for (int i = 0; i < pcm.length; i += 2) {
+            pcm[i] = (byte) value;
+            pcm[i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    private static byte[] tone(AudioFormat format, int frames, double hz, double amplitude) {
+        byte[] pcm = new byte[frames * format.getFrameSize()];
+        for (int f = 0, b = 0; f < frames; f++) {
+            short v = (short) Math.round(amplitude * Math.sin(2d * Math.PI * hz * f / format.getSampleRate()));
+            for (int c = 0; c < format.getChannels(); c++, b += 2) {
+                pcm[b] = (byte) v;
+                pcm[b + 1] = (byte) (v >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    /**
+     * @return среднеквадратичное значение первого канала без первых {@code skipFrames} кадров.
+     */
+    private static double rms(byte[] pcm, AudioFormat format, int skipFrames) {
+        int frames = pcm.length / format.getFrameSize();
+        double sum = 0d;
+        for (int f = skipFrames; f < frames; f++) {
+            double v = TestPcm.sample(pcm, format, f);
+            sum += v * v;
+        }
+        return Math.sqrt(sum / (frames - skipFrames));
+    }
+
+    @Test
+    void keepsSourceWithSameFormat() {
+        PcmSource source = TestPcm.source(MONO, TestPcm.frames(MONO, 10));
+        assertSame(source, PcmSource.convert(source, MONO));
+    }
+
+    @Test
+    void resamplesRateAndKeepsLevel() throws IOException {
+        AudioFormat out = new AudioFormat(48000f, 16, 1, true, false);
+        PcmSource source = PcmSource.convert(TestPcm.source(MONO, constant(MONO, 44100, (short) 1000)), out);
+        byte[] pcm = TestPcm.readAll(source, 1000, Integer.MAX_VALUE);
+
+        int frames = pcm.length / out.getFrameSize();
+        assertTrue(Math.abs(frames - 48000) <= 2, "frames: " + frames);
+        for (int f = 0; f < frames; f++) {
+            assertEquals(1000, TestPcm.sample(pcm, out, f), "frame " + f);
+        }
+    }
+
+    @Test
+    void downsamplesConstantWithoutTransient() throws IOException {
+        AudioFormat in = new AudioFormat(48000f, 16, 1, true, false);
+        PcmSource source = PcmSource.convert(TestPcm.source(in, constant(in, 48000, (short) 1000)), MONO);
+        byte[] pcm = TestPcm.readAll(source, 1000, Integer.MAX_VALUE);
+
+        int frames = pcm.length / MONO.getFrameSize();
+        assertTrue(Math.abs(frames - 44100) <= 2, "frames: " + frames);
+        for (int f = 0; f < frames; f++) {
+            assertEquals(1000, TestPcm.sample(pcm, MONO, f), 1, "frame " + f);
+        }
+    }
+
+    @Test
+    void filtersAboveNewNyquistWhenDownsampling() throws IOException {
+        AudioFormat in = new AudioFormat(48000f, 16, 1, true, false);
+        AudioFormat out = new AudioFormat(22050f, 16, 1, true, false);
+        double inputRms = 10_000 / Math.sqrt(2);
+
+        // 22 кГц без фильтра отразились бы в 50 Гц почти без ослабления:
+        byte[] alias = TestPcm.readAll(PcmSource.convert(TestPcm.source(in, tone(in, 48000, 22_000, 10_000)), out), 512, Integer.MAX_VALUE);
+        assertTrue(rms(alias, out, 1000) < inputRms * 0.1, "alias rms: " + rms(alias, out, 1000));
+
+        byte[] pass = TestPcm.readAll(PcmSource.convert(TestPcm.source(in, tone(in, 48000, 1_000, 10_000)), out), 512, Integer.MAX_VALUE);
+        assertTrue(rms(pass, out, 1000) > inputRms * 0.9, "pass rms: " + rms(pass, out, 1000));
+    }
+
+    @Test
+    void mapsMonoToStereoWithLastFrame() throws IOException {
+        AudioFormat stereo = new AudioFormat(44100f, 16, 2, true, false);
+        PcmSource source = PcmSource.convert(TestPcm.source(MONO, TestPcm.frames(MONO, 100)), stereo);
+        byte[] pcm = TestPcm.readAll(source, 16, Integer.MAX_VALUE);
+
+        assertEquals(stereo, source.getFormat());
+        assertEquals(100 * 4, pcm.length);
+        for (int i = 0; i + 3 < pcm.length; i += 4) {
+            assertEquals(pcm[i], pcm[i + 2]);
+            assertEquals(pcm[i + 1], pcm[i + 3]);
+        }
+        assertEquals(TestPcm.value(99), TestPcm.sample(pcm, stereo, 99));
+    }
+
+    @Test
+    void emitsLastFrameWhenUpsampling() throws IOException {
+        AudioFormat out = new AudioFormat(88200f, 16, 1, true, false);
+        byte[] pcm = TestPcm.readAll(PcmSource.convert(TestPcm.source(MONO, TestPcm.frames(MONO, 10)), out), 7, Integer.MAX_VALUE);
+
+        assertEquals(20 * 2, pcm.length);
+        assertEquals(TestPcm.value(9), TestPcm.sample(pcm, out, 18));
+    }
+}
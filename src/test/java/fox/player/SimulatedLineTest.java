@@ -0,0 +1,139 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.BooleanControl;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulatedLineTest {
+    private static final AudioFormat FORMAT = SoftMixer.DEFAULT_FORMAT;
+
+    @BeforeAll
+    static void install() {
+        SimulatedMixerProvider.install();
+        SimulatedMixerProvider.setSpeed(0);
+        SimulatedMixerProvider.setRecordBytes(1 << 20);
+    }
+
+    @AfterAll
+    static void uninstall() {
+        SimulatedMixerProvider.uninstall();
+        SimulatedMixerProvider.setSpeed(1);
+        SimulatedMixerProvider.setRecordBytes(0);
+    }
+
+    private static SimulatedLine open(int bufferBytes) throws Exception {
+        SourceDataLine line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, FORMAT));
+        assertInstanceOf(SimulatedLine.class, line);
+        line.open(FORMAT, bufferBytes);
+        return (SimulatedLine) line;
+    }
+
+    @Test
+    void isOfferedOnlyWhenSelected() {
+        assertTrue(Arrays.stream(AudioSystem.getMixerInfo()).map(Mixer.Info::getName).anyMatch(SimulatedMixerProvider.MIXER_NAME::equals));
+        SimulatedMixerProvider.uninstall();
+        try {
+            assertFalse(SimulatedMixerProvider.isEnabled());
+            assertFalse(Arrays.stream(AudioSystem.getMixerInfo()).map(Mixer.Info::getName).anyMatch(SimulatedMixerProvider.MIXER_NAME::equals));
+        } finally {
+            SimulatedMixerProvider.install();
+        }
+    }
+
+    @Test
+    void recordsWrittenPcmAndAdvancesPosition() throws Exception {
+        SimulatedLine line = open(4096);
+        List<LineEvent.Type> events = new ArrayList<>();
+        line.addLineListener(e -> events.add(e.getType()));
+        try {
+            assertTrue(SimulatedMixerProvider.getLines().contains(line));
+            byte[] pcm = TestPcm.frames(FORMAT, 10_000);
+            line.start();
+            assertEquals(pcm.length, line.write(pcm, 0, pcm.length));
+            line.drain();
+
+            assertEquals(10_000, line.getLongFramePosition());
+            assertEquals(pcm.length, line.getWrittenBytes());
+            assertArrayEquals(pcm, line.getRecorded());
+            line.stop();
+        } finally {
+            line.close();
+        }
+        assertFalse(SimulatedMixerProvider.getLines().contains(line));
+        assertEquals(List.of(LineEvent.Type.START, LineEvent.Type.STOP, LineEvent.Type.CLOSE), events);
+    }
+
+    @Test
+    void keepsLastWriteQueuedAtInstantSpeed() throws Exception {
+        SimulatedLine line = open(4096);
+        try {
+            line.start();
+            line.write(new byte[1024], 0, 1024);
+            assertEquals(4096 - 1024, line.available());
+            assertTrue(line.isActive());
+        } finally {
+            line.close();
+        }
+    }
+
+    @Test
+    void injectedUnderrunEmptiesBuffer() throws Exception {
+        SimulatedLine line = open(4096);
+        try {
+            line.start();
+            line.write(new byte[2048], 0, 2048);
+            assertTrue(line.available() < line.getBufferSize());
+
+            SimulatedMixerProvider.injectUnderruns();
+            assertEquals(line.getBufferSize(), line.available());
+            assertEquals(1, line.getUnderruns());
+        } finally {
+            line.close();
+        }
+    }
+
+    @Test
+    void exposesGainAndMuteControls() throws Exception {
+        SimulatedLine line = open(4096);
+        try {
+            FloatControl gain = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
+            gain.setValue(-6f);
+            assertEquals(-6f, gain.getValue(), 0.01f);
+            BooleanControl mute = (BooleanControl) line.getControl(BooleanControl.Type.MUTE);
+            mute.setValue(true);
+            assertTrue(mute.getValue());
+            assertFalse(line.isControlSupported(FloatControl.Type.PAN));
+        } finally {
+            line.close();
+        }
+    }
+
+    @Test
+    void rejectsPartialFrames() throws Exception {
+        SimulatedLine line = open(4096);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> line.write(new byte[3], 0, 3));
+        } finally {
+            line.close();
+        }
+    }
+}
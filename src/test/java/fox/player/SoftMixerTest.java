@@ -0,0 +1,139 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SoftMixerTest {
+    private static final AudioFormat FORMAT = SoftMixer.DEFAULT_FORMAT;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void install() {
+        SimulatedMixerProvider.install();
+        SimulatedMixerProvider.setSpeed(0);
+        SimulatedMixerProvider.setRecordBytes(1 << 20);
+    }
+
+    @AfterAll
+    static void uninstall() {
+        SimulatedMixerProvider.uninstall();
+        SimulatedMixerProvider.setSpeed(1);
+        SimulatedMixerProvider.setRecordBytes(0);
+    }
+
+    private static VoiceListener countDown(CountDownLatch done, AtomicInteger errors) {
+        return new VoiceListener() {
+            @Override
+            public void onFinished(String trackName) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String trackName, Throwable e) {
+                errors.incrementAndGet();
+                done.countDown();
+            }
+        };
+    }
+
+    /**
+     * Играет один голос на громкости 0 dB без нарастания и возвращает всё, что микшер записал в свою линию.
+     * @param minBytes сколько байт ждать в линии: о конце голоса микшер сообщает до записи его последнего блока.
+     */
+    private static byte[] playAlone(String name, Callable<PcmSource> opener, PlayerMetrics metrics, int minBytes) throws Exception {
+        List<SimulatedLine> before = SimulatedMixerProvider.getLines();
+        SoftMixer mixer = new SoftMixer(name, FORMAT, 4, 512);
+        try {
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicInteger errors = new AtomicInteger();
+            mixer.play(name, opener, 0f, 0, metrics, System.nanoTime(), countDown(done, errors));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, errors.get());
+            SimulatedLine line = SimulatedMixerProvider.getLines().stream().filter(l -> !before.contains(l)).findFirst().orElseThrow();
+            // тишина голодания тоже считается записанной, поэтому ждём ещё и пока линия не перестанет расти
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            long written = -1;
+            while ((line.getWrittenBytes() < minBytes || line.getWrittenBytes() != written) && System.nanoTime() < deadline) {
+                written = line.getWrittenBytes();
+                Thread.sleep(50);
+            }
+            return line.getRecorded();
+        } finally {
+            mixer.close();
+        }
+    }
+
+    @Test
+    void playsMemoryVoiceBitExact() throws Exception {
+        byte[] pcm = TestPcm.frames(FORMAT, 20_000);
+        byte[] recorded = playAlone("memory", () -> TestPcm.source(FORMAT, pcm), new PlayerMetrics("memory"), pcm.length);
+
+        assertTrue(recorded.length >= pcm.length);
+        assertArrayEquals(pcm, Arrays.copyOf(recorded, pcm.length));
+        // хвост последнего блока - тишина:
+        for (int i = pcm.length; i < recorded.length; i++) {
+            assertEquals(0, recorded[i]);
+        }
+    }
+
+    /**
+     * На скорости 0 линия не ждет, и упреждение может не успевать: голос тогда звучит тишиной, а не задерживает микшер.
+     * Без кадров тишины запись совпадает с файлом (в тестовом сигнале нулевых сэмплов нет).
+     */
+    @Test
+    void playsFileVoiceInOrderThroughReadAhead() throws Exception {
+        byte[] pcm = TestPcm.frames(FORMAT, 20_000);
+        File file = TestPcm.wav(dir, "ramp", FORMAT, pcm);
+        PlayerMetrics metrics = new PlayerMetrics("file");
+        byte[] recorded = playAlone("file", () -> PcmSource.open(file), metrics, pcm.length);
+
+        ByteArrayOutputStream audible = new ByteArrayOutputStream();
+        for (int i = 0; i + 3 < recorded.length; i += 4) {
+            if (recorded[i] != 0 || recorded[i + 1] != 0 || recorded[i + 2] != 0 || recorded[i + 3] != 0) {
+                audible.write(recorded, i, 4);
+            }
+        }
+        assertArrayEquals(pcm, audible.toByteArray());
+        assertEquals(1, metrics.getPlays());
+    }
+
+    @Test
+    void reportsEveryVoiceOnce() throws Exception {
+        File file = TestPcm.wav(dir, "short", FORMAT, TestPcm.frames(FORMAT, 2000));
+        SoftMixer mixer = new SoftMixer("many", 8);
+        try {
+            int voices = 40;
+            CountDownLatch done = new CountDownLatch(voices);
+            AtomicInteger errors = new AtomicInteger();
+            PlayerMetrics metrics = new PlayerMetrics("many");
+            for (int i = 0; i < voices; i++) {
+                mixer.play("short", () -> PcmSource.open(file), -12f, 0, metrics, System.nanoTime(), countDown(done, errors));
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS), "voices left: " + done.getCount());
+            // лишние сверх полифонии отбрасываются с ошибкой, остальные доигрывают:
+            assertEquals(errors.get(), metrics.getErrors());
+            assertEquals(voices - errors.get(), metrics.getPlays());
+        } finally {
+            mixer.close();
+        }
+    }
+}
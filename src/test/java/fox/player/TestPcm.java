@@ -0,0 +1,74 @@
+package fox.player;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Тестовые данные PCM: пилообразный сигнал, в котором по значению сэмпла видно номер кадра.
+ */
+final class TestPcm {
+    static final AudioFormat MONO = new AudioFormat(44100f, 16, 1, true, false);
+
+    private TestPcm() {}
+
+    /**
+     * @return кадры, в которых каждый сэмпл кадра {@code f} равен {@code f % 30000 + 1}.
+     */
+    static byte[] frames(AudioFormat format, int frames) {
+        int channels = format.getChannels();
+        byte[] pcm = new byte[frames * channels * 2];
+        for (int f = 0, b = 0; f < frames; f++) {
+            short v = value(f);
+            for (int c = 0; c < channels; c++, b += 2) {
+                pcm[b] = (byte) v;
+                pcm[b + 1] = (byte) (v >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    static short value(int frame) {
+        return (short) (frame % 30000 + 1);
+    }
+
+    /**
+     * @return первый сэмпл кадра {@code frame}.
+     */
+    static short sample(byte[] pcm, AudioFormat format, int frame) {
+        int i = frame * format.getFrameSize();
+        return (short) (pcm[i] & 0xFF | pcm[i + 1] << 8);
+    }
+
+    static PcmSource source(AudioFormat format, byte[] pcm) {
+        return PcmSource.of(new PcmTrack("test", format, ByteBuffer.wrap(pcm)));
+    }
+
+    static File wav(Path dir, String name, AudioFormat format, byte[] pcm) throws IOException {
+        File file = dir.resolve(name + ".wav").toFile();
+        try (AudioInputStream ais = new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / format.getFrameSize())) {
+            AudioSystem.write(ais, AudioFileFormat.Type.WAVE, file);
+        }
+        return file;
+    }
+
+    /**
+     * Читает источник до конца блоками по {@code chunkFrames} кадров (не больше {@code maxBytes}).
+     */
+    static byte[] readAll(PcmSource source, int chunkFrames, int maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunkFrames * source.getFormat().getFrameSize()];
+        int n;
+        while (out.size() < maxBytes && (n = source.read(buffer, 0, Math.min(buffer.length, maxBytes - out.size()))) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
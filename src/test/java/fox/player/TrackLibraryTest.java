@@ -0,0 +1,69 @@
+package fox.player;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static fox.player.TestPcm.MONO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackLibraryTest {
+    private final PlayerScheduler scheduler = new PlayerScheduler("library", 2);
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown(1000);
+    }
+
+    @Test
+    void removesTracksOfDeletedFiles(@TempDir Path dir, @TempDir Path cache) throws Exception {
+        Path audio = Files.createDirectories(dir.resolve("audio"));
+        File kept = TestPcm.wav(audio, "kept", MONO, TestPcm.frames(MONO, 100));
+        File deleted = TestPcm.wav(audio, "deleted", MONO, TestPcm.frames(MONO, 100));
+        File outside = TestPcm.wav(dir, "outside", MONO, TestPcm.frames(MONO, 100));
+        List<String> replaced = new CopyOnWriteArrayList<>();
+        TrackLibrary library = new TrackLibrary(scheduler, replaced::add);
+        library.setIndexPath(cache.resolve("library.idx"));
+
+        assertEquals(2, library.scan(audio));
+        library.add("outside", outside);
+        assertTrue(deleted.delete());
+        assertEquals(1, library.scan(audio));
+
+        assertTrue(library.contains("kept"));
+        assertTrue(library.contains("outside"));
+        assertFalse(library.contains("deleted"));
+        assertEquals(List.of("deleted"), replaced);
+        assertEquals(kept, library.getFile("kept"));
+    }
+
+    @Test
+    void keepsDefaultIndexOutOfAssetDirectory(@TempDir Path dir) {
+        Path index = TrackLibrary.defaultIndexPath(dir);
+        assertFalse(index.toAbsolutePath().startsWith(dir.toAbsolutePath()), index.toString());
+        assertTrue(index.getFileName().toString().endsWith(TrackLibrary.INDEX_EXTENSION));
+        assertEquals(index, TrackLibrary.defaultIndexPath(dir.resolve(".")));
+    }
+
+    @Test
+    void scansAsyncOnPlayerIoThread(@TempDir Path dir, @TempDir Path cache) throws Exception {
+        for (int i = 0; i < 12; i++) {
+            TestPcm.wav(dir, "track" + i, MONO, TestPcm.frames(MONO, 100));
+        }
+        TrackLibrary library = new TrackLibrary(scheduler);
+        library.setIndexPath(cache.resolve("library.idx"));
+
+        assertEquals(12, library.scanAsync(dir).get(10, TimeUnit.SECONDS));
+        assertTrue(Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().startsWith("library-io-")));
+        assertTrue(Files.isRegularFile(cache.resolve("library.idx")));
+    }
+}
@@ -0,0 +1,37 @@
+package fox.player;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VolumeConverterTest {
+    private final VolumeConverter converter = new VolumeConverter();
+
+    @Test
+    void percentAndGainAreInverse() {
+        for (int percent = 0; percent <= 100; percent++) {
+            assertEquals(percent, converter.gainToVolumePercent(converter.volumePercentToGain(percent)), "percent " + percent);
+        }
+        assertEquals(converter.getMinimum(), converter.volumePercentToGain(-10f));
+        assertEquals(converter.getMaximum(), converter.volumePercentToGain(150f));
+        assertEquals(0, converter.gainToVolumePercent(-200f));
+        assertEquals(100, converter.gainToVolumePercent(40f));
+    }
+
+    @Test
+    void gainToLinearMatchesFormula() {
+        for (float gain = converter.getMinimum() + 0.01f; gain <= converter.getMaximum(); gain += 0.13f) {
+            double exact = Math.pow(10d, gain / 20d);
+            assertEquals(exact, converter.gainToLinear(gain), exact * 1e-4, "gain " + gain);
+            assertEquals(gain, converter.linearToGain(converter.gainToLinear(gain)), 1e-3, "gain " + gain);
+        }
+        assertEquals(0f, converter.gainToLinear(converter.getMinimum()));
+        assertEquals(1f, converter.gainToLinear(0f), 1e-6);
+    }
+
+    @Test
+    void gainToLinearOutsideTable() {
+        converter.setMaximum(40f);
+        assertEquals(Math.pow(10d, 30d / 20d), converter.gainToLinear(30f), 1e-3);
+    }
+}